@@ -0,0 +1,100 @@
+package org.bloby.psychik.bench;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.WorldMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import org.bloby.psychik.Psychik;
+import org.bloby.psychik.Psychik.MovementListener;
+import org.bukkit.Location;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jedna invokace = jeden tick, ve kterém se pohne každý simulovaný hráč.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MoveStormBenchmark {
+    private static final int STEPS = 256;
+    
+    @Param({"100", "500"})
+    public int players;
+    
+    @Param({"1000"})
+    public int zones;
+    
+    @Param({"spread", "overlap"})
+    public String layout;
+    
+    // performance.cache-player-zones - zkratka pro hráče, který zůstal ve stejném chunku
+    @Param({"true", "false"})
+    public boolean exactChunkShortcut;
+    
+    private MovementListener listener;
+    private PlayerMock[] mocks;
+    private PlayerMoveEvent[][] events;
+    private int step;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        ServerMock server = MockBukkit.mock();
+        WorldMock world = server.addSimpleWorld("world");
+        Psychik plugin = MockBukkit.load(Psychik.class);
+        plugin.getConfig().set("performance.movement-check-interval", 1);
+        plugin.getConfig().set("advanced.async-zone-checks", false);
+        plugin.getConfig().set("performance.cache-player-zones", exactChunkShortcut);
+        listener = new MovementListener(plugin);
+        
+        Random rnd = new Random(42);
+        ZoneLayouts.populate(plugin.getZoneManager(), world, zones, layout, rnd);
+        double extent = ZoneLayouts.extent(zones, layout);
+        
+        // Náhodná procházka po 0.3 bloku - většina pohybů zůstává ve stejném bloku jako na serveru
+        mocks = new PlayerMock[players];
+        events = new PlayerMoveEvent[STEPS][players];
+        for (int i = 0; i < players; i++) {
+            PlayerMock p = server.addPlayer();
+            mocks[i] = p;
+            double x = rnd.nextDouble() * extent;
+            double z = rnd.nextDouble() * extent;
+            double heading = rnd.nextDouble() * 2 * Math.PI;
+            Location prev = new Location(world, x, ZoneLayouts.Y, z);
+            for (int s = 0; s < STEPS; s++) {
+                heading += (rnd.nextDouble() - 0.5) * 0.4;
+                x += Math.cos(heading) * 0.3;
+                z += Math.sin(heading) * 0.3;
+                Location to = new Location(world, x, ZoneLayouts.Y, z);
+                events[s][i] = new PlayerMoveEvent(p, prev, to);
+                prev = to;
+            }
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void drainMessages() {
+        for (PlayerMock p : mocks) {
+            while (p.nextMessage() != null) {
+                // zprávy o vstupu/výstupu by jinak rostly po celou dobu měření
+            }
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+    
+    @Benchmark
+    public void moveStorm() {
+        PlayerMoveEvent[] tick = events[step];
+        step = (step + 1) & (STEPS - 1);
+        for (PlayerMoveEvent e : tick) {
+            listener.onMove(e);
+        }
+    }
+}
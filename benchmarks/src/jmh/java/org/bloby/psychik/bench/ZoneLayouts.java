@@ -0,0 +1,51 @@
+package org.bloby.psychik.bench;
+
+import org.bloby.psychik.Psychik.PsychikZone;
+import org.bloby.psychik.Psychik.ZoneManager;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Random;
+
+final class ZoneLayouts {
+    static final double Y = 64.0;
+    
+    private ZoneLayouts() {
+    }
+    
+    // spread: zóny v mřížce bez překryvu, overlap: každý bod leží v desítkách zón
+    static double extent(int zones, String layout) {
+        int side = (int) Math.ceil(Math.sqrt(zones));
+        return "overlap".equals(layout) ? side * 16.0 : side * 64.0;
+    }
+    
+    static void populate(ZoneManager manager, World world, int zones, String layout, Random rnd) {
+        int side = (int) Math.ceil(Math.sqrt(zones));
+        double extent = extent(zones, layout);
+        for (int i = 0; i < zones; i++) {
+            double x, z, size;
+            if ("overlap".equals(layout)) {
+                x = rnd.nextDouble() * extent;
+                z = rnd.nextDouble() * extent;
+                size = 32 + rnd.nextDouble() * 64;
+            } else {
+                x = (i % side) * 64.0 + 32;
+                z = (i / side) * 64.0 + 32;
+                size = 8 + rnd.nextDouble() * 16;
+            }
+            PsychikZone.Shape shape = rnd.nextBoolean() ? PsychikZone.Shape.CIRCLE : PsychikZone.Shape.SQUARE;
+            PsychikZone zone = new PsychikZone("zone" + i, new Location(world, x, Y, z), shape, size);
+            zone.setSpeedMultiplier(0.5 + rnd.nextInt(4) * 0.25);
+            zone.setJumpMultiplier(1.0 + rnd.nextInt(3) * 0.5);
+            manager.addZone(zone);
+        }
+    }
+    
+    static Location[] probes(World world, double extent, int count, Random rnd) {
+        Location[] r = new Location[count];
+        for (int i = 0; i < count; i++) {
+            r[i] = new Location(world, rnd.nextDouble() * (extent + 32) - 16, Y, rnd.nextDouble() * (extent + 32) - 16);
+        }
+        return r;
+    }
+}
@@ -0,0 +1,73 @@
+package org.bloby.psychik.bench;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.WorldMock;
+import org.bloby.psychik.Psychik;
+import org.bloby.psychik.Psychik.PsychikZone;
+import org.bloby.psychik.Psychik.ZoneManager;
+import org.bloby.psychik.Psychik.ZoneResolution;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ZoneLookupBenchmark {
+    private static final int PROBES = 4096;
+    
+    @Param({"10", "100", "1000", "10000"})
+    public int zones;
+    
+    @Param({"spread", "overlap"})
+    public String layout;
+    
+    private ZoneManager manager;
+    private PsychikZone zone;
+    private Location[] probes;
+    private int cursor;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        ServerMock server = MockBukkit.mock();
+        WorldMock world = server.addSimpleWorld("world");
+        Psychik plugin = MockBukkit.load(Psychik.class);
+        manager = plugin.getZoneManager();
+        ZoneLayouts.populate(manager, world, zones, layout, new Random(42));
+        probes = ZoneLayouts.probes(world, ZoneLayouts.extent(zones, layout), PROBES, new Random(7));
+        zone = manager.getZone("zone0");
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+    
+    private Location next() {
+        return probes[cursor++ & (PROBES - 1)];
+    }
+    
+    @Benchmark
+    public List<PsychikZone> getZonesAt() {
+        return manager.getZonesAt(next());
+    }
+    
+    @Benchmark
+    public PsychikZone getZoneAt() {
+        return manager.getZoneAt(next());
+    }
+    
+    @Benchmark
+    public ZoneResolution resolve() {
+        return manager.resolve(next(), null);
+    }
+    
+    @Benchmark
+    public boolean contains() {
+        return zone.contains(next());
+    }
+}
@@ -5,28 +5,86 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.player.PlayerVelocityEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.ChatColor;
+import org.bukkit.Color;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
 import org.bukkit.Bukkit;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.attribute.AttributeModifier;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Psychik extends JavaPlugin {
     private static Psychik instance;
     private ZoneManager zoneManager;
+    private AsyncZoneChecker asyncChecker;
+    private PlayerLifecycleListener lifecycle;
     
     @Override
     public void onEnable() {
@@ -34,18 +92,64 @@ public class Psychik extends JavaPlugin {
         if (!getDataFolder().exists()) {
             getDataFolder().mkdirs();
         }
+        saveDefaultConfig();
+        Metrics.setEnabled(getConfig().getBoolean("advanced.metrics", true));
         zoneManager = new ZoneManager(this);
         zoneManager.loadZones();
+        zoneManager.startSaver();
         getCommand("psychik").setExecutor(new ZoneCommand(this));
         getCommand("psychik").setTabCompleter(new ZoneCommand(this));
-        getServer().getPluginManager().registerEvents(new MovementListener(this), this);
+        MovementListener movement = new MovementListener(this);
+        getServer().getPluginManager().registerEvents(movement, this);
+        zoneManager.setChangeListener(movement::zonesChanged);
+        lifecycle = new PlayerLifecycleListener(this, movement);
+        getServer().getPluginManager().registerEvents(lifecycle, this);
+        for (Player p : getServer().getOnlinePlayers()) {
+            lifecycle.track(p);
+        }
+        getServer().getPluginManager().registerEvents(new WorldListener(this), this);
+        if (getConfig().getBoolean("effects.knockback.enabled", true)
+                || getConfig().getBoolean("effects.gravity.enabled", true)) {
+            getServer().getPluginManager().registerEvents(new CombatListener(this), this);
+        }
+        if (getConfig().getBoolean("effects.gravity.enabled", true)) {
+            getServer().getScheduler().runTaskTimer(this, Metrics.timed(Metrics.GRAVITY_TASK, new GravityTask(this)), 1L, 1L);
+        }
+        if (getConfig().getBoolean("effects.stamina.enabled", true)) {
+            int period = Math.max(1, getConfig().getInt("effects.stamina.drain-period", 10));
+            getServer().getScheduler().runTaskTimer(this, Metrics.timed(Metrics.STAMINA_TASK, () -> ZoneApplier.drainAll(period)), period, period);
+        }
+        int dump = getConfig().getInt("advanced.metrics-dump-interval", 0);
+        if (Metrics.isEnabled() && dump > 0) {
+            boolean csv = getConfig().getBoolean("advanced.metrics-csv", false);
+            long period = dump * 60L * 20L;
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> Metrics.dump(this, csv), period, period);
+        }
+        if (getConfig().getBoolean("visual.border-particles", false)) {
+            getServer().getScheduler().runTaskTimer(this, Metrics.timed(Metrics.BORDER_TASK, new BorderRenderer(this)), 1L, 1L);
+        }
+        int interval = movement.getCheckInterval();
+        if (movement.isAsync()) {
+            asyncChecker = new AsyncZoneChecker(this, movement, getConfig().getInt("advanced.thread-pool-size", 2));
+            getServer().getScheduler().runTaskTimer(this, Metrics.timed(Metrics.ASYNC_TASK, asyncChecker), interval, interval);
+        } else if (movement.isBatched()) {
+            getServer().getScheduler().runTaskTimer(this, Metrics.timed(Metrics.BATCH_TASK, new BatchZoneTask(this, movement)), interval, interval);
+        }
         getLogger().info("Psychik enabled!");
     }
     
     @Override
     public void onDisable() {
+        if (asyncChecker != null) {
+            asyncChecker.shutdown();
+        }
+        if (lifecycle != null) {
+            for (Player p : getServer().getOnlinePlayers()) {
+                lifecycle.untrack(p);
+            }
+        }
         if (zoneManager != null) {
-            zoneManager.saveZones();
+            zoneManager.shutdown();
         }
         getLogger().info("Psychik disabled!");
     }
@@ -59,48 +163,352 @@ public class Psychik extends JavaPlugin {
     }
     
     public static class PsychikZone {
-        public enum Shape { CIRCLE, SQUARE }
+        public enum Shape { CIRCLE, SQUARE, SPHERE, CYLINDER, CUBOID, POLYGON }
+        
+        public static final int OUTSIDE = 0;
+        public static final int INSIDE = 1;
+        public static final int BOUNDARY = 2;
+        public static final int MAX_POLYGON_POINTS = 256;
+        
+        private static final AtomicInteger NEXT_ID = new AtomicInteger();
+        private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
         
+        private final int id = NEXT_ID.incrementAndGet();
+        private long order;
         private String name;
+        private final String worldName;
+        private final double x;
+        private final double y;
+        private final double z;
         private Location center;
         private Shape shape;
         private double size;
+        private double minY = Double.NEGATIVE_INFINITY;
+        private double maxY = Double.POSITIVE_INFINITY;
+        private EdgeTable polygon;
+        private double boxMinX;
+        private double boxMaxX;
+        private double boxMinY;
+        private double boxMaxY;
+        private double boxMinZ;
+        private double boxMaxZ;
         private double gravityMultiplier = 1.0;
         private double speedMultiplier = 1.0;
         private double jumpMultiplier = 1.0;
         private double knockbackMultiplier = 1.0;
         private double staminaDrainPerSec = 0.0;
+        private volatile EffectProfile profile;
+        private boolean frozen;
         
         public PsychikZone(String name, Location center, Shape shape, double size) {
+            this(name, center.getWorld().getName(), center.getX(), center.getY(), center.getZ(), shape, size);
+            this.center = center.clone();
+        }
+        
+        public PsychikZone(String name, String worldName, double x, double y, double z, Shape shape, double size) {
             this.name = name;
-            this.center = center;
+            this.worldName = worldName;
+            this.x = x;
+            this.y = y;
+            this.z = z;
             this.shape = shape;
             this.size = size;
+            updateBounds();
+        }
+        
+        /**
+         * Polygon point-in-polygon test over horizontal slabs: vertex Z
+         * values split the plane into slabs and each slab stores only the
+         * edges that cross it, so a lookup is a binary search plus a couple
+         * of crossings for typical arena outlines.
+         */
+        public static final class EdgeTable {
+            private final double[] xs;
+            private final double[] zs;
+            private final double[] slabZ;
+            private final int[][] slabEdges;
+            private final double[] edgeX;
+            private final double[] edgeZ;
+            private final double[] edgeSlope;
+            
+            public EdgeTable(double[] xs, double[] zs) {
+                this.xs = xs.clone();
+                this.zs = zs.clone();
+                int n = xs.length;
+                edgeX = new double[n];
+                edgeZ = new double[n];
+                edgeSlope = new double[n];
+                double[] lo = new double[n];
+                double[] hi = new double[n];
+                for (int i = 0; i < n; i++) {
+                    int j = (i + 1) % n;
+                    edgeX[i] = xs[i];
+                    edgeZ[i] = zs[i];
+                    lo[i] = Math.min(zs[i], zs[j]);
+                    hi[i] = Math.max(zs[i], zs[j]);
+                    edgeSlope[i] = zs[j] != zs[i] ? (xs[j] - xs[i]) / (zs[j] - zs[i]) : 0;
+                }
+                double[] sorted = zs.clone();
+                Arrays.sort(sorted);
+                int m = 0;
+                for (int i = 0; i < n; i++) {
+                    if (m == 0 || sorted[i] != sorted[m - 1]) {
+                        sorted[m++] = sorted[i];
+                    }
+                }
+                slabZ = Arrays.copyOf(sorted, m);
+                slabEdges = new int[Math.max(0, m - 1)][];
+                int[] tmp = new int[n];
+                for (int k = 0; k < slabEdges.length; k++) {
+                    int c = 0;
+                    for (int i = 0; i < n; i++) {
+                        // Vodorovné hrany nikdy nekříží vnitřek slabu
+                        if (lo[i] <= slabZ[k] && hi[i] >= slabZ[k + 1] && lo[i] != hi[i]) {
+                            tmp[c++] = i;
+                        }
+                    }
+                    slabEdges[k] = Arrays.copyOf(tmp, c);
+                }
+            }
+            
+            public boolean contains(double px, double pz) {
+                int k = Arrays.binarySearch(slabZ, pz);
+                if (k < 0) {
+                    k = -k - 2;
+                }
+                if (k < 0 || k >= slabEdges.length) {
+                    return false;
+                }
+                boolean in = false;
+                for (int e : slabEdges[k]) {
+                    if (px < edgeX[e] + (pz - edgeZ[e]) * edgeSlope[e]) {
+                        in = !in;
+                    }
+                }
+                return in;
+            }
+            
+            public int classify(double minX, double minZ, double maxX, double maxZ) {
+                int n = xs.length;
+                for (int i = 0; i < n; i++) {
+                    int j = (i + 1) % n;
+                    if (crosses(xs[i], zs[i], xs[j], zs[j], minX, minZ, maxX, maxZ)) {
+                        return BOUNDARY;
+                    }
+                }
+                // Žádná hrana neprochází obdélníkem - celý je buď uvnitř, nebo venku
+                return contains((minX + maxX) / 2, (minZ + maxZ) / 2) ? INSIDE : OUTSIDE;
+            }
+            
+            public double area() {
+                double a = 0;
+                for (int i = 0, n = xs.length; i < n; i++) {
+                    int j = (i + 1) % n;
+                    a += xs[i] * zs[j] - xs[j] * zs[i];
+                }
+                return Math.abs(a) / 2;
+            }
+            
+            public EdgeTable scaled(double cx, double cz, double factor) {
+                double[] nx = new double[xs.length];
+                double[] nz = new double[zs.length];
+                for (int i = 0; i < xs.length; i++) {
+                    nx[i] = cx + (xs[i] - cx) * factor;
+                    nz[i] = cz + (zs[i] - cz) * factor;
+                }
+                return new EdgeTable(nx, nz);
+            }
+            
+            public double[] getXs() { return xs.clone(); }
+            public double[] getZs() { return zs.clone(); }
+            public int size() { return xs.length; }
+            
+            // Liang-Barsky ořez úsečky obdélníkem
+            private static boolean crosses(double x0, double z0, double x1, double z1,
+                                           double minX, double minZ, double maxX, double maxZ) {
+                double t0 = 0;
+                double t1 = 1;
+                double dx = x1 - x0;
+                double dz = z1 - z0;
+                double[] p = { -dx, dx, -dz, dz };
+                double[] q = { x0 - minX, maxX - x0, z0 - minZ, maxZ - z0 };
+                for (int i = 0; i < 4; i++) {
+                    if (p[i] == 0) {
+                        if (q[i] < 0) return false;
+                    } else {
+                        double r = q[i] / p[i];
+                        if (p[i] < 0) {
+                            if (r > t1) return false;
+                            if (r > t0) t0 = r;
+                        } else {
+                            if (r < t0) return false;
+                            if (r < t1) t1 = r;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        
+        private void updateBounds() {
+            if (shape == Shape.POLYGON && polygon != null) {
+                boxMinX = boxMinZ = Double.POSITIVE_INFINITY;
+                boxMaxX = boxMaxZ = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < polygon.xs.length; i++) {
+                    boxMinX = Math.min(boxMinX, polygon.xs[i]);
+                    boxMaxX = Math.max(boxMaxX, polygon.xs[i]);
+                    boxMinZ = Math.min(boxMinZ, polygon.zs[i]);
+                    boxMaxZ = Math.max(boxMaxZ, polygon.zs[i]);
+                }
+            } else {
+                boxMinX = x - size;
+                boxMaxX = x + size;
+                boxMinZ = z - size;
+                boxMaxZ = z + size;
+            }
+            boxMinY = minY;
+            boxMaxY = maxY;
+            if (shape == Shape.SPHERE) {
+                boxMinY = Math.max(minY, y - size);
+                boxMaxY = Math.min(maxY, y + size);
+            }
+        }
+        
+        public void bind(World w) {
+            checkMutable();
+            center = new Location(w, x, y, z);
+        }
+        
+        public void unbind() {
+            checkMutable();
+            center = null;
+        }
+        
+        // Zóna ve snapshotu se už nemění - úpravy jdou přes copy()
+        void freeze() {
+            frozen = true;
+        }
+        
+        private void checkMutable() {
+            if (frozen) {
+                throw new IllegalStateException("Zone '" + name + "' is published; edit a copy() instead");
+            }
+        }
+        
+        public boolean isBound() {
+            return center != null;
         }
         
         public boolean contains(Location loc) {
-            if (loc.getWorld() == null || center.getWorld() == null) {
+            Location c = center;
+            if (c == null || loc.getWorld() == null) {
                 return false;
             }
-            if (!loc.getWorld().equals(center.getWorld())) {
+            if (loc.getWorld() != c.getWorld()) {
                 return false;
             }
-            double dx = loc.getX() - center.getX();
-            double dz = loc.getZ() - center.getZ();
-            if (shape == Shape.CIRCLE) {
-                return (dx * dx + dz * dz) <= (size * size);
-            } else {
-                return Math.abs(dx) <= size && Math.abs(dz) <= size;
+            return contains(loc.getX(), loc.getY(), loc.getZ());
+        }
+        
+        public boolean contains(double lx, double ly, double lz) {
+            if (lx < boxMinX || lx > boxMaxX || lz < boxMinZ || lz > boxMaxZ || ly < boxMinY || ly > boxMaxY) {
+                return false;
+            }
+            double dx = lx - x;
+            double dz = lz - z;
+            switch (shape) {
+                case CIRCLE:
+                case CYLINDER:
+                    return (dx * dx + dz * dz) <= (size * size);
+                case SPHERE:
+                    double dy = ly - y;
+                    return (dx * dx + dy * dy + dz * dz) <= (size * size);
+                case POLYGON:
+                    return polygon != null && polygon.contains(lx, lz);
+                default:
+                    return true;
+            }
+        }
+        
+        public int classify(double minX, double minZ, double maxX, double maxZ) {
+            if (maxX < boxMinX || minX > boxMaxX || maxZ < boxMinZ || minZ > boxMaxZ) {
+                return OUTSIDE;
+            }
+            int r;
+            switch (shape) {
+                case CIRCLE:
+                case CYLINDER:
+                case SPHERE:
+                    r = classifyCircle(minX, minZ, maxX, maxZ);
+                    break;
+                case POLYGON:
+                    r = polygon != null ? polygon.classify(minX, minZ, maxX, maxZ) : OUTSIDE;
+                    break;
+                default:
+                    r = minX >= boxMinX && maxX <= boxMaxX && minZ >= boxMinZ && maxZ <= boxMaxZ ? INSIDE : BOUNDARY;
+                    break;
+            }
+            // Sloupec chunku nemůže celý ležet v zóně s omezenou výškou
+            return r == INSIDE && isVertical() ? BOUNDARY : r;
+        }
+        
+        private int classifyCircle(double minX, double minZ, double maxX, double maxZ) {
+            double nx = Math.max(minX, Math.min(x, maxX)) - x;
+            double nz = Math.max(minZ, Math.min(z, maxZ)) - z;
+            if (nx * nx + nz * nz > size * size) {
+                return OUTSIDE;
             }
+            double fx = Math.max(Math.abs(minX - x), Math.abs(maxX - x));
+            double fz = Math.max(Math.abs(minZ - z), Math.abs(maxZ - z));
+            return fx * fx + fz * fz <= size * size ? INSIDE : BOUNDARY;
+        }
+        
+        /**
+         * Whether the chunk lies within the given distance of the zone's bounding
+         * box. Chunks overlapping the box always pass, so the cutoff never
+         * drops a zone that could contain the player.
+         */
+        public boolean isNearChunk(int chunkX, int chunkZ, double maxDistance) {
+            double dx = Math.max(0, Math.max((chunkX << 4) - boxMaxX, boxMinX - ((chunkX << 4) + 16)));
+            double dz = Math.max(0, Math.max((chunkZ << 4) - boxMaxZ, boxMinZ - ((chunkZ << 4) + 16)));
+            return dx * dx + dz * dz <= maxDistance * maxDistance;
+        }
+        
+        public boolean isVertical() {
+            return boxMinY != Double.NEGATIVE_INFINITY || boxMaxY != Double.POSITIVE_INFINITY;
+        }
+        
+        public PsychikZone copy() {
+            PsychikZone z = new PsychikZone(name, worldName, x, y, this.z, shape, size);
+            z.center = center != null ? center.clone() : null;
+            z.minY = minY;
+            z.maxY = maxY;
+            z.polygon = polygon;
+            z.updateBounds();
+            z.gravityMultiplier = gravityMultiplier;
+            z.speedMultiplier = speedMultiplier;
+            z.jumpMultiplier = jumpMultiplier;
+            z.knockbackMultiplier = knockbackMultiplier;
+            z.staminaDrainPerSec = staminaDrainPerSec;
+            return z;
         }
         
         public void saveToConfig(ConfigurationSection s) {
-            s.set("center.world", center.getWorld().getName());
-            s.set("center.x", center.getX());
-            s.set("center.y", center.getY());
-            s.set("center.z", center.getZ());
+            s.set("center.world", worldName);
+            s.set("center.x", x);
+            s.set("center.y", y);
+            s.set("center.z", z);
             s.set("shape", shape.name());
             s.set("size", size);
+            s.set("min-y", minY != Double.NEGATIVE_INFINITY ? minY : null);
+            s.set("max-y", maxY != Double.POSITIVE_INFINITY ? maxY : null);
+            if (polygon != null) {
+                List<String> points = new ArrayList<>(polygon.size());
+                for (int i = 0; i < polygon.size(); i++) {
+                    points.add(polygon.xs[i] + "," + polygon.zs[i]);
+                }
+                s.set("points", points);
+            }
             s.set("gravity", gravityMultiplier);
             s.set("speed", speedMultiplier);
             s.set("jump", jumpMultiplier);
@@ -108,21 +516,36 @@ public class Psychik extends JavaPlugin {
             s.set("stamina", staminaDrainPerSec);
         }
         
+        public static PsychikZone create(String name, String worldName, double x, double y, double z, Shape shape, double size) {
+            PsychikZone zone = new PsychikZone(name, worldName, x, y, z, shape, size);
+            World world = Bukkit.getWorld(worldName);
+            if (world != null) {
+                zone.bind(world);
+            }
+            return zone;
+        }
+        
         public static PsychikZone loadFromConfig(String name, ConfigurationSection s) {
+            PsychikZone z = readFromConfig(name, s);
+            if (z != null) {
+                World world = Bukkit.getWorld(z.getWorldName());
+                if (world != null) {
+                    z.bind(world);
+                }
+            }
+            return z;
+        }
+        
+        /** Names shared by commands and imports: letters, digits, '_' and '-'. */
+        public static boolean isValidName(String name) {
+            return name != null && NAME.matcher(name).matches();
+        }
+        
+        public static PsychikZone readFromConfig(String name, ConfigurationSection s) {
             String worldName = s.getString("center.world");
             if (worldName == null) {
                 return null;
             }
-            World world = Bukkit.getWorld(worldName);
-            if (world == null) {
-                return null;
-            }
-            Location center = new Location(
-                world, 
-                s.getDouble("center.x"), 
-                s.getDouble("center.y"), 
-                s.getDouble("center.z")
-            );
             String shapeStr = s.getString("shape");
             if (shapeStr == null) {
                 return null;
@@ -133,7 +556,36 @@ public class Psychik extends JavaPlugin {
             } catch (IllegalArgumentException e) {
                 return null;
             }
-            PsychikZone z = new PsychikZone(name, center, shape, s.getDouble("size"));
+            PsychikZone z = new PsychikZone(
+                name, 
+                worldName, 
+                s.getDouble("center.x"), 
+                s.getDouble("center.y"), 
+                s.getDouble("center.z"), 
+                shape, 
+                s.getDouble("size")
+            );
+            if (shape == Shape.POLYGON) {
+                List<String> points = s.getStringList("points");
+                double[] xs = new double[points.size()];
+                double[] zs = new double[points.size()];
+                try {
+                    for (int i = 0; i < points.size(); i++) {
+                        String[] p = points.get(i).split(",");
+                        xs[i] = Double.parseDouble(p[0].trim());
+                        zs[i] = Double.parseDouble(p[1].trim());
+                    }
+                } catch (RuntimeException e) {
+                    return null;
+                }
+                if (!z.setPolygon(xs, zs)) {
+                    return null;
+                }
+            }
+            z.setVerticalBounds(
+                s.contains("min-y") ? s.getDouble("min-y") : Double.NEGATIVE_INFINITY,
+                s.contains("max-y") ? s.getDouble("max-y") : Double.POSITIVE_INFINITY
+            );
             z.gravityMultiplier = s.getDouble("gravity", 1.0);
             z.speedMultiplier = s.getDouble("speed", 1.0);
             z.jumpMultiplier = s.getDouble("jump", 1.0);
@@ -142,21 +594,93 @@ public class Psychik extends JavaPlugin {
             return z;
         }
         
+        public EffectProfile getProfile() {
+            EffectProfile p = profile;
+            if (p == null) {
+                p = EffectProfile.of(gravityMultiplier, speedMultiplier, jumpMultiplier, knockbackMultiplier, staminaDrainPerSec);
+                profile = p;
+            }
+            return p;
+        }
+        
+        public double getArea() {
+            switch (shape) {
+                case CIRCLE:
+                case CYLINDER:
+                case SPHERE:
+                    return Math.PI * size * size;
+                case POLYGON:
+                    return polygon != null ? polygon.area() : 0;
+                default:
+                    return 4 * size * size;
+            }
+        }
+        
+        /**
+         * Sets the polygon outline in absolute X/Z coordinates. The zone size
+         * becomes the distance of the farthest vertex from the center.
+         */
+        public boolean setPolygon(double[] xs, double[] zs) {
+            checkMutable();
+            if (xs.length != zs.length || xs.length < 3 || xs.length > MAX_POLYGON_POINTS) {
+                return false;
+            }
+            polygon = new EdgeTable(xs, zs);
+            double r = 0;
+            for (int i = 0; i < xs.length; i++) {
+                r = Math.max(r, Math.hypot(xs[i] - x, zs[i] - z));
+            }
+            size = r;
+            updateBounds();
+            return true;
+        }
+        
+        public void setVerticalBounds(double min, double max) {
+            checkMutable();
+            minY = min;
+            maxY = max;
+            updateBounds();
+        }
+        
+        public int getId() { return id; }
+        public long getOrder() { return order; }
         public String getName() { return name; }
         public Location getCenter() { return center; }
+        public String getWorldName() { return worldName; }
+        public double getX() { return x; }
+        public double getY() { return y; }
+        public double getZ() { return z; }
         public Shape getShape() { return shape; }
         public double getSize() { return size; }
-        public void setSize(double s) { size = s; }
+        public double getMinY() { return minY; }
+        public double getMaxY() { return maxY; }
+        public EdgeTable getPolygon() { return polygon; }
+        public double getBoxMinX() { return boxMinX; }
+        public double getBoxMaxX() { return boxMaxX; }
+        public double getBoxMinY() { return boxMinY; }
+        public double getBoxMaxY() { return boxMaxY; }
+        public double getBoxMinZ() { return boxMinZ; }
+        public double getBoxMaxZ() { return boxMaxZ; }
+        
+        public void setSize(double s) {
+            checkMutable();
+            if (polygon != null && size > 0) {
+                polygon = polygon.scaled(x, z, s / size);
+            }
+            size = s;
+            updateBounds();
+        }
+        
         public double getGravityMultiplier() { return gravityMultiplier; }
-        public void setGravityMultiplier(double v) { gravityMultiplier = v; }
+        public void setGravityMultiplier(double v) { checkMutable(); gravityMultiplier = v; profile = null; }
         public double getSpeedMultiplier() { return speedMultiplier; }
-        public void setSpeedMultiplier(double v) { speedMultiplier = v; }
+        public void setSpeedMultiplier(double v) { checkMutable(); speedMultiplier = v; profile = null; }
         public double getJumpMultiplier() { return jumpMultiplier; }
-        public void setJumpMultiplier(double v) { jumpMultiplier = v; }
+        public void setJumpMultiplier(double v) { checkMutable(); jumpMultiplier = v; profile = null; }
         public double getKnockbackMultiplier() { return knockbackMultiplier; }
-        public void setKnockbackMultiplier(double v) { knockbackMultiplier = v; }
+        public void setKnockbackMultiplier(double v) { checkMutable(); knockbackMultiplier = v; profile = null; }
         public double getStaminaDrainPerSec() { return staminaDrainPerSec; }
-        public void setStaminaDrainPerSec(double v) { staminaDrainPerSec = v; }
+        public void setStaminaDrainPerSec(double v) { checkMutable(); staminaDrainPerSec = v; profile = null; }
         
         @Override
         public boolean equals(Object o) {
@@ -172,419 +696,3948 @@ public class Psychik extends JavaPlugin {
         }
     }
     
-    public static class ZoneManager {
-        private final Psychik plugin;
-        private final Map<String, PsychikZone> zones = new HashMap<>();
-        private final File zonesFile;
+    public static final class EffectProfile {
+        private static final Map<EffectProfile, EffectProfile> INTERNED = new ConcurrentHashMap<>();
         
-        public ZoneManager(Psychik plugin) {
-            this.plugin = plugin;
-            this.zonesFile = new File(plugin.getDataFolder(), "zones.yml");
+        private final double gravity;
+        private final double speed;
+        private final double jump;
+        private final double knockback;
+        private final double stamina;
+        
+        private EffectProfile(double gravity, double speed, double jump, double knockback, double stamina) {
+            this.gravity = gravity;
+            this.speed = speed;
+            this.jump = jump;
+            this.knockback = knockback;
+            this.stamina = stamina;
         }
         
-        public void loadZones() {
-            if (!zonesFile.exists()) {
-                try { 
-                    zonesFile.createNewFile(); 
-                } catch (IOException e) { 
-                    plugin.getLogger().severe("Failed to create zones.yml: " + e.getMessage());
-                    e.printStackTrace(); 
-                }
-                return;
-            }
-            FileConfiguration cfg = YamlConfiguration.loadConfiguration(zonesFile);
-            ConfigurationSection sec = cfg.getConfigurationSection("zones");
-            if (sec == null) {
-                return;
-            }
-            for (String n : sec.getKeys(false)) {
-                ConfigurationSection zoneSection = sec.getConfigurationSection(n);
-                if (zoneSection == null) continue;
-                PsychikZone z = PsychikZone.loadFromConfig(n, zoneSection);
-                if (z != null) {
-                    zones.put(n, z);
-                }
-            }
-            plugin.getLogger().info("Loaded " + zones.size() + " zones");
+        public static EffectProfile of(double gravity, double speed, double jump, double knockback, double stamina) {
+            EffectProfile p = new EffectProfile(gravity, speed, jump, knockback, stamina);
+            EffectProfile existing = INTERNED.putIfAbsent(p, p);
+            return existing != null ? existing : p;
         }
         
-        public void saveZones() {
-            FileConfiguration cfg = new YamlConfiguration();
-            for (Map.Entry<String, PsychikZone> e : zones.entrySet()) {
-                e.getValue().saveToConfig(cfg.createSection("zones." + e.getKey()));
-            }
-            try { 
-                cfg.save(zonesFile); 
-            } catch (IOException e) { 
-                plugin.getLogger().severe("Failed to save zones: " + e.getMessage());
-                e.printStackTrace();
+        public static EffectProfile blend(PsychikZone[] zones, int n) {
+            double g = 0, s = 0, j = 0, k = 0, st = 0;
+            for (int i = 0; i < n; i++) {
+                EffectProfile p = zones[i].getProfile();
+                g += p.gravity;
+                s += p.speed;
+                j += p.jump;
+                k += p.knockback;
+                st += p.stamina;
             }
+            return of(g / n, s / n, j / n, k / n, st / n);
         }
         
-        public void addZone(PsychikZone z) { 
-            zones.put(z.getName(), z); 
-            saveZones(); 
-        }
+        public double getGravity() { return gravity; }
+        public double getSpeed() { return speed; }
+        public double getJump() { return jump; }
+        public double getKnockback() { return knockback; }
+        public double getStamina() { return stamina; }
         
-        public void removeZone(String n) { 
-            zones.remove(n); 
-            saveZones(); 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EffectProfile)) return false;
+            EffectProfile that = (EffectProfile) o;
+            return Double.compare(gravity, that.gravity) == 0
+                && Double.compare(speed, that.speed) == 0
+                && Double.compare(jump, that.jump) == 0
+                && Double.compare(knockback, that.knockback) == 0
+                && Double.compare(stamina, that.stamina) == 0;
         }
         
-        public PsychikZone getZone(String n) { 
-            return zones.get(n); 
+        @Override
+        public int hashCode() {
+            return Objects.hash(gravity, speed, jump, knockback, stamina);
         }
+    }
+    
+    public static final class ZoneResolution {
+        private final PsychikZone primary;
+        private final PsychikZone[] zones;
+        private final EffectProfile profile;
         
-        public List<PsychikZone> getZonesAt(Location loc) {
-            List<PsychikZone> r = new ArrayList<>();
-            for (PsychikZone z : zones.values()) {
-                if (z.contains(loc)) {
-                    r.add(z);
-                }
-            }
-            return r;
+        ZoneResolution(PsychikZone primary, PsychikZone[] zones, EffectProfile profile) {
+            this.primary = primary;
+            this.zones = zones;
+            this.profile = profile;
         }
         
-        public Map<String, PsychikZone> getAllZones() { 
-            return new HashMap<>(zones); 
-        }
+        public PsychikZone getPrimary() { return primary; }
+        public PsychikZone[] getZones() { return zones; }
+        public EffectProfile getProfile() { return profile; }
     }
     
-    public static class ZoneApplier {
-        private static final Map<UUID, PsychikZone> playerZones = new HashMap<>();
-        private static final double DEFAULT_SPEED = 0.1;
+    public static class ZoneResolver {
+        public enum Priority { FIRST, LAST, LARGEST, SMALLEST, BLEND }
         
-        public static void apply(Player p, PsychikZone z) {
-            playerZones.put(p.getUniqueId(), z);
+        // Pořadí vložení do registru přežije restart i úpravy, id z běhu JVM ne
+        private static final Comparator<PsychikZone> BY_ORDER = Comparator.comparingLong(PsychikZone::getOrder);
+        private static final int MAX_CACHED = 4096;
+        
+        private static final class Key {
+            private final int[] ids;
+            private final int hash;
             
-            AttributeInstance spd = p.getAttribute(Attribute.GENERIC_MOVEMENT_SPEED);
-            if (spd != null) {
-                spd.setBaseValue(DEFAULT_SPEED * z.getSpeedMultiplier());
-            }
-            
-            if (z.getGravityMultiplier() < 1.0) {
-                int amplifier = (int)((1.0 - z.getGravityMultiplier()) * 5);
-                p.addPotionEffect(new PotionEffect(
-                    PotionEffectType.SLOW_FALLING, 
-                    Integer.MAX_VALUE, 
-                    amplifier, 
-                    false, 
-                    false, 
-                    false
-                ));
-            } else {
-                p.removePotionEffect(PotionEffectType.SLOW_FALLING);
-            }
-            
-            if (z.getJumpMultiplier() != 1.0) {
-                int amp = (int)((z.getJumpMultiplier() - 1.0) * 3);
-                if (amp > 0) {
-                    p.addPotionEffect(new PotionEffect(
-                        PotionEffectType.JUMP, 
-                        Integer.MAX_VALUE, 
-                        amp, 
-                        false, 
-                        false, 
-                        false
-                    ));
-                } else {
-                    p.removePotionEffect(PotionEffectType.JUMP);
+            Key(PsychikZone[] zones, int n) {
+                ids = new int[n];
+                for (int i = 0; i < n; i++) {
+                    ids[i] = zones[i].getId();
                 }
-            } else {
-                p.removePotionEffect(PotionEffectType.JUMP);
+                hash = Arrays.hashCode(ids);
             }
-        }
-        
-        public static void remove(Player p) {
-            playerZones.remove(p.getUniqueId());
             
-            AttributeInstance spd = p.getAttribute(Attribute.GENERIC_MOVEMENT_SPEED);
-            if (spd != null) {
-                spd.setBaseValue(DEFAULT_SPEED);
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Key && Arrays.equals(ids, ((Key) o).ids);
             }
             
-            p.removePotionEffect(PotionEffectType.SLOW_FALLING);
-            p.removePotionEffect(PotionEffectType.JUMP);
+            @Override
+            public int hashCode() {
+                return hash;
+            }
         }
         
-        public static PsychikZone getCurrent(Player p) { 
-            return playerZones.get(p.getUniqueId()); 
+        private final Priority priority;
+        private final Map<Key, ZoneResolution> cache = new ConcurrentHashMap<>();
+        private volatile int epoch;
+        
+        public ZoneResolver(String priority) {
+            Priority p;
+            try {
+                p = Priority.valueOf(priority.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                p = Priority.FIRST;
+            }
+            this.priority = p;
+        }
+        
+        public int getEpoch() {
+            return epoch;
+        }
+        
+        public void invalidate() {
+            epoch++;
+            cache.clear();
         }
         
-        public static void drainStamina(Player p, PsychikZone z) {
-            if (z.getStaminaDrainPerSec() > 0) {
-                float drain = (float)(z.getStaminaDrainPerSec() / 20.0);
-                float sat = Math.max(0, p.getSaturation() - drain);
-                p.setSaturation(sat);
-                if (sat <= 0 && p.getFoodLevel() > 0) {
-                    p.setFoodLevel(Math.max(0, p.getFoodLevel() - 1));
+        public ZoneResolution resolve(PsychikZone[] zones, int n) {
+            if (n == 0) {
+                return null;
+            }
+            Arrays.sort(zones, 0, n, BY_ORDER);
+            Key key = new Key(zones, n);
+            ZoneResolution r = cache.get(key);
+            if (r == null) {
+                if (cache.size() >= MAX_CACHED) {
+                    cache.clear();
                 }
+                r = compute(Arrays.copyOf(zones, n));
+                cache.put(key, r);
+            }
+            return r;
+        }
+        
+        private ZoneResolution compute(PsychikZone[] zones) {
+            PsychikZone primary = zones[0];
+            switch (priority) {
+                case LAST:
+                    primary = zones[zones.length - 1];
+                    break;
+                case LARGEST:
+                    for (PsychikZone z : zones) {
+                        if (z.getArea() > primary.getArea()) primary = z;
+                    }
+                    break;
+                case SMALLEST:
+                    for (PsychikZone z : zones) {
+                        if (z.getArea() < primary.getArea()) primary = z;
+                    }
+                    break;
+                default:
+                    break;
             }
+            EffectProfile profile = priority == Priority.BLEND && zones.length > 1
+                ? EffectProfile.blend(zones, zones.length)
+                : primary.getProfile();
+            return new ZoneResolution(primary, zones, profile);
         }
     }
     
-    public static class ZoneCommand implements CommandExecutor, TabCompleter {
-        private final Psychik plugin;
+    public static class ZoneIndex {
+        private final Map<String, Map<Long, List<PsychikZone>>> worlds = new HashMap<>();
+        private final int cellShift;
         
-        public ZoneCommand(Psychik p) { 
-            plugin = p; 
+        public ZoneIndex(int cellSize) {
+            this.cellShift = 31 - Integer.numberOfLeadingZeros(Math.max(16, cellSize));
         }
         
-        @Override
-        public boolean onCommand(CommandSender s, Command c, String l, String[] a) {
-            if (!s.hasPermission("psychik.admin")) { 
-                s.sendMessage(ChatColor.RED + "No permission."); 
-                return true; 
+        public void add(PsychikZone z) {
+            Map<Long, List<PsychikZone>> cells = worlds.computeIfAbsent(worldOf(z), k -> new HashMap<>());
+            int minX = cell(z.getBoxMinX());
+            int maxX = cell(z.getBoxMaxX());
+            int minZ = cell(z.getBoxMinZ());
+            int maxZ = cell(z.getBoxMaxZ());
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    cells.computeIfAbsent(key(cx, cz), k -> new ArrayList<>(2)).add(z);
+                }
             }
-            if (a.length == 0) { 
-                sendHelp(s); 
-                return true; 
+        }
+        
+        public void remove(PsychikZone z) {
+            Map<Long, List<PsychikZone>> cells = worlds.get(worldOf(z));
+            if (cells == null) return;
+            int minX = cell(z.getBoxMinX());
+            int maxX = cell(z.getBoxMaxX());
+            int minZ = cell(z.getBoxMinZ());
+            int maxZ = cell(z.getBoxMaxZ());
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    Long k = key(cx, cz);
+                    List<PsychikZone> l = cells.get(k);
+                    if (l != null && l.remove(z) && l.isEmpty()) {
+                        cells.remove(k);
+                    }
+                }
             }
-            switch (a[0].toLowerCase()) {
-                case "create": 
-                    return create(s, a);
-                case "delete": 
-                    return delete(s, a);
-                case "edit": 
-                    return edit(s, a);
-                case "list": 
-                    return list(s);
-                case "info": 
-                    return info(s, a);
-                default: 
-                    sendHelp(s); 
-                    return true;
+            if (cells.isEmpty()) {
+                worlds.remove(worldOf(z));
             }
         }
         
-        private void sendHelp(CommandSender s) {
-            s.sendMessage(ChatColor.GOLD + "=== Psychik Help ===");
-            s.sendMessage(ChatColor.YELLOW + "/psychik create <name> <circle|square> <size>");
-            s.sendMessage(ChatColor.YELLOW + "/psychik delete <name>");
-            s.sendMessage(ChatColor.YELLOW + "/psychik edit <name> <property> <value>");
-            s.sendMessage(ChatColor.YELLOW + "/psychik list");
-            s.sendMessage(ChatColor.YELLOW + "/psychik info <name>");
-            s.sendMessage(ChatColor.GRAY + "Properties: gravity, speed, jump, knockback, stamina, size");
+        public List<PsychikZone> candidates(World w, double x, double z) {
+            Map<Long, List<PsychikZone>> cells = worlds.get(w.getName());
+            if (cells == null) return Collections.emptyList();
+            List<PsychikZone> l = cells.get(key(cell(x), cell(z)));
+            return l != null ? l : Collections.emptyList();
         }
         
-        private boolean create(CommandSender s, String[] a) {
-            if (!(s instanceof Player)) { 
-                s.sendMessage(ChatColor.RED + "Players only."); 
-                return true; 
-            }
-            if (a.length < 4) { 
-                s.sendMessage(ChatColor.RED + "Usage: /psychik create <name> <circle|square> <size>"); 
-                return true; 
-            }
-            Player p = (Player)s;
-            String n = a[1];
-            double sz;
-            try { 
-                sz = Double.parseDouble(a[3]); 
-                if (sz <= 0) {
-                    s.sendMessage(ChatColor.RED + "Size must be positive.");
+        public void clear() {
+            worlds.clear();
+        }
+        
+        public void dropWorld(String world) {
+            worlds.remove(world);
+        }
+        
+        private int cell(double v) {
+            return (int) Math.floor(v) >> cellShift;
+        }
+        
+        private static long key(int cx, int cz) {
+            return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+        }
+        
+        private static String worldOf(PsychikZone z) {
+            return z.getWorldName();
+        }
+    }
+    
+    public static class ChunkZoneCache {
+        private static final PsychikZone[] NONE = new PsychikZone[0];
+        
+        public static class Entry {
+            private static final int MEMO_LIMIT = 6;
+            
+            private final PsychikZone[] full;
+            private final PsychikZone[] partial;
+            private ZoneResolution[] memo;
+            private int memoEpoch;
+            
+            Entry(PsychikZone[] full, PsychikZone[] partial) {
+                this.full = full;
+                this.partial = partial;
+            }
+            
+            public PsychikZone[] getFull() { return full; }
+            public PsychikZone[] getPartial() { return partial; }
+            public boolean isExact() { return partial.length == 0; }
+            
+            public ZoneResolution resolve(Location loc, ZoneResolver resolver) {
+                if (partial.length > MEMO_LIMIT) {
+                    PsychikZone[] zones = Arrays.copyOf(full, full.length + partial.length);
+                    int n = full.length;
+                    for (PsychikZone z : partial) {
+                        if (z.contains(loc)) {
+                            zones[n++] = z;
+                        }
+                    }
+                    return resolver.resolve(zones, n);
+                }
+                int mask = 0;
+                for (int i = 0; i < partial.length; i++) {
+                    if (partial[i].contains(loc)) {
+                        mask |= 1 << i;
+                    }
+                }
+                if (full.length == 0 && mask == 0) {
+                    return null;
+                }
+                int epoch = resolver.getEpoch();
+                if (memo == null || memoEpoch != epoch) {
+                    memo = new ZoneResolution[1 << partial.length];
+                    memoEpoch = epoch;
+                }
+                ZoneResolution r = memo[mask];
+                Metrics.record(r != null ? Metrics.MEMO_HITS : Metrics.MEMO_MISSES);
+                if (r == null) {
+                    PsychikZone[] zones = Arrays.copyOf(full, full.length + Integer.bitCount(mask));
+                    int n = full.length;
+                    for (int i = 0; i < partial.length; i++) {
+                        if ((mask & (1 << i)) != 0) {
+                            zones[n++] = partial[i];
+                        }
+                    }
+                    r = resolver.resolve(zones, n);
+                    memo[mask] = r;
+                }
+                return r;
+            }
+        }
+        
+        public static final Entry EMPTY = new Entry(NONE, NONE);
+        
+        private final Map<String, LinkedHashMap<Long, Entry>> worlds = new HashMap<>();
+        private final int maxEntriesPerWorld;
+        private final double maxDistance;
+        private long generation;
+        
+        public ChunkZoneCache(int maxEntriesPerWorld, double maxDistance) {
+            this.maxEntriesPerWorld = Math.max(16, maxEntriesPerWorld);
+            this.maxDistance = maxDistance;
+        }
+        
+        public Entry get(World w, int chunkX, int chunkZ, Collection<PsychikZone> candidates) {
+            LinkedHashMap<Long, Entry> chunks = worlds.get(w.getName());
+            if (chunks == null) {
+                chunks = new LinkedHashMap<Long, Entry>(64, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                        return size() > maxEntriesPerWorld;
+                    }
+                };
+                worlds.put(w.getName(), chunks);
+            }
+            long k = key(chunkX, chunkZ);
+            Entry e = chunks.get(k);
+            if (e == null) {
+                e = build(w, chunkX, chunkZ, candidates);
+                chunks.put(k, e);
+                Metrics.record(Metrics.CHUNK_MISSES);
+            } else {
+                Metrics.record(Metrics.CHUNK_HITS);
+            }
+            return e;
+        }
+        
+        public long getGeneration() {
+            return generation;
+        }
+        
+        public void invalidate(PsychikZone z) {
+            generation++;
+            LinkedHashMap<Long, Entry> chunks = worlds.get(z.getWorldName());
+            if (chunks == null || chunks.isEmpty()) return;
+            int minX = (int) Math.floor(z.getBoxMinX()) >> 4;
+            int maxX = (int) Math.floor(z.getBoxMaxX()) >> 4;
+            int minZ = (int) Math.floor(z.getBoxMinZ()) >> 4;
+            int maxZ = (int) Math.floor(z.getBoxMaxZ()) >> 4;
+            long area = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+            if (area > chunks.size()) {
+                chunks.keySet().removeIf(k -> {
+                    int cx = (int) (k >> 32);
+                    int cz = (int) (long) k;
+                    return cx >= minX && cx <= maxX && cz >= minZ && cz <= maxZ;
+                });
+                return;
+            }
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    chunks.remove(key(cx, cz));
+                }
+            }
+        }
+        
+        public void clear() {
+            generation++;
+            worlds.clear();
+        }
+        
+        public void dropWorld(String world) {
+            generation++;
+            worlds.remove(world);
+        }
+        
+        private Entry build(World w, int chunkX, int chunkZ, Collection<PsychikZone> candidates) {
+            double minX = chunkX << 4;
+            double minZ = chunkZ << 4;
+            List<PsychikZone> full = null;
+            List<PsychikZone> partial = null;
+            for (PsychikZone z : candidates) {
+                if (!z.isBound() || !w.getName().equals(z.getWorldName())) continue;
+                if (!z.isNearChunk(chunkX, chunkZ, maxDistance)) continue;
+                switch (z.classify(minX, minZ, minX + 16, minZ + 16)) {
+                    case PsychikZone.INSIDE:
+                        if (full == null) full = new ArrayList<>(2);
+                        full.add(z);
+                        break;
+                    case PsychikZone.BOUNDARY:
+                        if (partial == null) partial = new ArrayList<>(2);
+                        partial.add(z);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new Entry(
+                full == null ? NONE : full.toArray(NONE),
+                partial == null ? NONE : partial.toArray(NONE)
+            );
+        }
+        
+        private static long key(int cx, int cz) {
+            return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+        }
+    }
+    
+    public static final class ZoneGeometry {
+        private static final byte BOX = 0;
+        private static final byte CIRCLE = 1;
+        private static final byte SPHERE = 2;
+        private static final byte POLYGON = 3;
+        
+        private final PsychikZone[] zones;
+        private final byte[] kind;
+        private final double[] minX;
+        private final double[] maxX;
+        private final double[] minY;
+        private final double[] maxY;
+        private final double[] minZ;
+        private final double[] maxZ;
+        private final double[] cx;
+        private final double[] cy;
+        private final double[] cz;
+        private final double[] r2;
+        private final int cellShift;
+        // Řídká mřížka: seřazené klíče buněk, cellZones[cellStart[c]..cellStart[c + 1]) jsou zóny v buňce c
+        private final long[] cellKeys;
+        private final int[] cellStart;
+        private final int[] cellZones;
+        
+        public ZoneGeometry(List<PsychikZone> list, int cellSize) {
+            this.cellShift = 31 - Integer.numberOfLeadingZeros(Math.max(16, cellSize));
+            zones = list.toArray(new PsychikZone[0]);
+            int n = zones.length;
+            kind = new byte[n];
+            minX = new double[n];
+            maxX = new double[n];
+            minY = new double[n];
+            maxY = new double[n];
+            minZ = new double[n];
+            maxZ = new double[n];
+            cx = new double[n];
+            cy = new double[n];
+            cz = new double[n];
+            r2 = new double[n];
+            for (int i = 0; i < n; i++) {
+                PsychikZone z = zones[i];
+                switch (z.getShape()) {
+                    case CIRCLE:
+                    case CYLINDER:
+                        kind[i] = CIRCLE;
+                        break;
+                    case SPHERE:
+                        kind[i] = SPHERE;
+                        break;
+                    case POLYGON:
+                        kind[i] = POLYGON;
+                        break;
+                    default:
+                        kind[i] = BOX;
+                        break;
+                }
+                minX[i] = z.getBoxMinX();
+                maxX[i] = z.getBoxMaxX();
+                minY[i] = z.getBoxMinY();
+                maxY[i] = z.getBoxMaxY();
+                minZ[i] = z.getBoxMinZ();
+                maxZ[i] = z.getBoxMaxZ();
+                cx[i] = z.getX();
+                cy[i] = z.getY();
+                cz[i] = z.getZ();
+                r2[i] = z.getSize() * z.getSize();
+            }
+            Map<Long, List<Integer>> cells = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                int x0 = cell(minX[i]);
+                int x1 = cell(maxX[i]);
+                int z0 = cell(minZ[i]);
+                int z1 = cell(maxZ[i]);
+                for (int gx = x0; gx <= x1; gx++) {
+                    for (int gz = z0; gz <= z1; gz++) {
+                        cells.computeIfAbsent(key(gx, gz), k -> new ArrayList<>(2)).add(i);
+                    }
+                }
+            }
+            cellKeys = new long[cells.size()];
+            int c = 0;
+            int total = 0;
+            for (Map.Entry<Long, List<Integer>> e : cells.entrySet()) {
+                cellKeys[c++] = e.getKey();
+                total += e.getValue().size();
+            }
+            Arrays.sort(cellKeys);
+            cellStart = new int[cellKeys.length + 1];
+            cellZones = new int[total];
+            int k = 0;
+            for (c = 0; c < cellKeys.length; c++) {
+                cellStart[c] = k;
+                for (int id : cells.get(cellKeys[c])) {
+                    cellZones[k++] = id;
+                }
+            }
+            cellStart[cellKeys.length] = k;
+        }
+        
+        public int size() {
+            return zones.length;
+        }
+        
+        public PsychikZone getZone(int id) {
+            return zones[id];
+        }
+        
+        /** Appends the zones containing the point to {@code out}, in registry order. */
+        public void zonesAt(double x, double y, double z, List<PsychikZone> out) {
+            int c = Arrays.binarySearch(cellKeys, key(cell(x), cell(z)));
+            if (c < 0) return;
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                int i = cellZones[k];
+                if (test(i, x, y, z)) {
+                    out.add(zones[i]);
+                }
+            }
+        }
+        
+        /**
+         * Batch lookup for points from..to: the zone slots containing point k
+         * end up in hits[start[k - from]..start[k - from + 1]). Returns the
+         * hits array, grown if the one passed in was too small.
+         */
+        public int[] collect(double[] xs, double[] ys, double[] zs, int from, int to, int[] start, int[] hits) {
+            int n = 0;
+            for (int p = from; p < to; p++) {
+                start[p - from] = n;
+                double x = xs[p];
+                double y = ys[p];
+                double z = zs[p];
+                int c = Arrays.binarySearch(cellKeys, key(cell(x), cell(z)));
+                if (c < 0) continue;
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                    int i = cellZones[k];
+                    if (test(i, x, y, z)) {
+                        if (n == hits.length) {
+                            hits = Arrays.copyOf(hits, Math.max(16, n * 2));
+                        }
+                        hits[n++] = i;
+                    }
+                }
+            }
+            start[to - from] = n;
+            return hits;
+        }
+        
+        private int cell(double v) {
+            return (int) Math.floor(v) >> cellShift;
+        }
+        
+        private static long key(int gx, int gz) {
+            return ((long) gx << 32) | (gz & 0xFFFFFFFFL);
+        }
+        
+        private boolean test(int i, double x, double y, double z) {
+            // Obalový kvádr nejdřív - přesný test jen pro zbylé kandidáty
+            if (x < minX[i] || x > maxX[i] || z < minZ[i] || z > maxZ[i] || y < minY[i] || y > maxY[i]) {
+                return false;
+            }
+            switch (kind[i]) {
+                case CIRCLE: {
+                    double dx = x - cx[i];
+                    double dz = z - cz[i];
+                    return dx * dx + dz * dz <= r2[i];
+                }
+                case SPHERE: {
+                    double dx = x - cx[i];
+                    double dy = y - cy[i];
+                    double dz = z - cz[i];
+                    return dx * dx + dy * dy + dz * dz <= r2[i];
+                }
+                case POLYGON:
+                    return zones[i].contains(x, y, z);
+                default:
                     return true;
+            }
+        }
+    }
+    
+    /**
+     * Immutable zone names sorted case-insensitively, so prefix lookups are a
+     * binary search followed by a scan over the matches only.
+     */
+    public static final class ZoneNames {
+        public static final ZoneNames EMPTY = new ZoneNames(new String[0]);
+        private static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+        
+        private final String[] names;
+        
+        private ZoneNames(String[] names) {
+            this.names = names;
+        }
+        
+        public static ZoneNames of(Collection<String> names) {
+            String[] a = names.toArray(new String[0]);
+            Arrays.sort(a, ORDER);
+            return new ZoneNames(a);
+        }
+        
+        public ZoneNames insert(String name) {
+            int i = Arrays.binarySearch(names, name, ORDER);
+            if (i >= 0) return this;
+            i = -i - 1;
+            String[] a = new String[names.length + 1];
+            System.arraycopy(names, 0, a, 0, i);
+            a[i] = name;
+            System.arraycopy(names, i, a, i + 1, names.length - i);
+            return new ZoneNames(a);
+        }
+        
+        public ZoneNames remove(String name) {
+            int i = Arrays.binarySearch(names, name, ORDER);
+            if (i < 0) return this;
+            String[] a = new String[names.length - 1];
+            System.arraycopy(names, 0, a, 0, i);
+            System.arraycopy(names, i + 1, a, i, names.length - i - 1);
+            return new ZoneNames(a);
+        }
+        
+        public int complete(String prefix, int limit, List<String> out) {
+            int i = Arrays.binarySearch(names, prefix, String.CASE_INSENSITIVE_ORDER);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            // Při shodě bez ohledu na velikost písmen může binarySearch trefit libovolný z nich
+            while (i > 0 && names[i - 1].regionMatches(true, 0, prefix, 0, prefix.length())) {
+                i--;
+            }
+            int n = 0;
+            for (; i < names.length && n < limit; i++) {
+                if (!names[i].regionMatches(true, 0, prefix, 0, prefix.length())) break;
+                out.add(names[i]);
+                n++;
+            }
+            return n;
+        }
+        
+        public int size() {
+            return names.length;
+        }
+        
+        public String get(int i) {
+            return names[i];
+        }
+    }
+    
+    public static final class ZoneSnapshot {
+        private final long version;
+        private final Map<String, PsychikZone> zones;
+        private final Map<String, ZoneGeometry> worlds;
+        private final ZoneNames names;
+        private final long lastOrder;
+        private final int cellSize;
+        
+        private ZoneSnapshot(long version, Map<String, PsychikZone> zones, Map<String, ZoneGeometry> worlds, ZoneNames names,
+                             long lastOrder, int cellSize) {
+            this.version = version;
+            this.zones = zones;
+            this.worlds = worlds;
+            this.names = names;
+            this.lastOrder = lastOrder;
+            this.cellSize = cellSize;
+        }
+        
+        public static ZoneSnapshot empty(int cellSize) {
+            return new ZoneSnapshot(0, Collections.emptyMap(), Collections.emptyMap(), ZoneNames.EMPTY, 0, cellSize);
+        }
+        
+        public ZoneSnapshot replaceAll(Map<String, PsychikZone> zones) {
+            Set<String> touched = new HashSet<>(worlds.keySet());
+            for (PsychikZone z : zones.values()) {
+                touched.add(z.getWorldName());
+            }
+            return next(version + 1, new LinkedHashMap<>(zones), touched, ZoneNames.of(zones.keySet()));
+        }
+        
+        public ZoneSnapshot with(PsychikZone z, PsychikZone replaced) {
+            Map<String, PsychikZone> m = new LinkedHashMap<>(zones);
+            m.put(z.getName(), z);
+            Set<String> touched = new HashSet<>();
+            touched.add(z.getWorldName());
+            if (replaced != null) {
+                touched.add(replaced.getWorldName());
+            }
+            return next(version + 1, m, touched, names.insert(z.getName()));
+        }
+        
+        public ZoneSnapshot rebind(String world, Collection<PsychikZone> replacements) {
+            Map<String, PsychikZone> m = new LinkedHashMap<>(zones);
+            for (PsychikZone z : replacements) {
+                m.put(z.getName(), z);
+            }
+            return next(version + 1, m, Collections.singleton(world), names);
+        }
+        
+        public ZoneSnapshot without(PsychikZone z) {
+            Map<String, PsychikZone> m = new LinkedHashMap<>(zones);
+            m.remove(z.getName());
+            return next(version + 1, m, Collections.singleton(z.getWorldName()), names.remove(z.getName()));
+        }
+        
+        private ZoneSnapshot next(long v, Map<String, PsychikZone> m, Set<String> touched, ZoneNames n) {
+            // Pořadí v registru: náhrada zdědí místo předchůdce, nová zóna jde na konec
+            long last = lastOrder;
+            for (PsychikZone z : m.values()) {
+                if (z.order == 0) {
+                    PsychikZone prev = zones.get(z.getName());
+                    z.order = prev != null ? prev.order : ++last;
+                }
+                z.freeze();
+            }
+            Map<String, ZoneGeometry> w = new HashMap<>(worlds);
+            for (String world : touched) {
+                List<PsychikZone> bound = new ArrayList<>();
+                for (PsychikZone z : m.values()) {
+                    if (z.isBound() && world.equals(z.getWorldName())) {
+                        bound.add(z);
+                    }
+                }
+                if (bound.isEmpty()) {
+                    w.remove(world);
+                } else {
+                    w.put(world, new ZoneGeometry(bound, cellSize));
+                }
+            }
+            return new ZoneSnapshot(v, Collections.unmodifiableMap(m), Collections.unmodifiableMap(w), n, last, cellSize);
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+        
+        public Map<String, PsychikZone> getZones() {
+            return zones;
+        }
+        
+        public PsychikZone getZone(String name) {
+            return zones.get(name);
+        }
+        
+        public ZoneNames getNames() {
+            return names;
+        }
+        
+        public ZoneGeometry getGeometry(String world) {
+            return worlds.get(world);
+        }
+        
+        /**
+         * Zones containing the point, in registry order. Reads only this
+         * immutable snapshot, so it is safe to call from any thread.
+         */
+        public List<PsychikZone> zonesAt(String world, double x, double y, double z) {
+            ZoneGeometry g = worlds.get(world);
+            if (g == null) {
+                return new ArrayList<>();
+            }
+            List<PsychikZone> r = new ArrayList<>(2);
+            g.zonesAt(x, y, z, r);
+            return r;
+        }
+    }
+    
+    public interface ZoneStore {
+        Map<String, PsychikZone> load() throws IOException;
+        
+        void write(List<PsychikZone> zones) throws IOException;
+        
+        default boolean needsRewrite() {
+            return false;
+        }
+        
+        static void replace(File tmp, File target) throws IOException {
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+    
+    /** A store that can record single edits in a journal between full rewrites. */
+    public interface JournaledZoneStore extends ZoneStore {
+        final class Op {
+            private final String name;
+            private final PsychikZone zone;
+            
+            Op(String name, PsychikZone zone) {
+                this.name = name;
+                this.zone = zone;
+            }
+            
+            public String getName() { return name; }
+            public PsychikZone getZone() { return zone; }
+            public boolean isDelete() { return zone == null; }
+        }
+        
+        void append(List<Op> ops) throws IOException;
+        
+        int getJournalOps();
+    }
+    
+    public static class YamlZoneStore implements ZoneStore {
+        private final Psychik plugin;
+        private final File file;
+        
+        public YamlZoneStore(Psychik plugin, File file) {
+            this.plugin = plugin;
+            this.file = file;
+        }
+        
+        @Override
+        public Map<String, PsychikZone> load() throws IOException {
+            Map<String, PsychikZone> zones = new LinkedHashMap<>();
+            if (!file.exists()) {
+                if (!file.createNewFile()) {
+                    plugin.getLogger().warning("Could not create " + file.getName());
+                }
+                return zones;
+            }
+            // loadConfiguration by chybu jen zalogoval a vrátil prázdnou konfiguraci
+            FileConfiguration cfg = new YamlConfiguration();
+            try {
+                cfg.load(file);
+            } catch (InvalidConfigurationException e) {
+                throw new IOException(file.getName() + " is not valid YAML: " + e.getMessage(), e);
+            }
+            ConfigurationSection sec = cfg.getConfigurationSection("zones");
+            if (sec == null) {
+                return zones;
+            }
+            for (String n : sec.getKeys(false)) {
+                ConfigurationSection zoneSection = sec.getConfigurationSection(n);
+                if (zoneSection == null) continue;
+                PsychikZone z = PsychikZone.loadFromConfig(n, zoneSection);
+                if (z != null) {
+                    zones.put(n, z);
+                }
+            }
+            return zones;
+        }
+        
+        @Override
+        public void write(List<PsychikZone> zones) throws IOException {
+            FileConfiguration cfg = new YamlConfiguration();
+            for (PsychikZone z : zones) {
+                z.saveToConfig(cfg.createSection("zones." + z.getName()));
+            }
+            File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+            cfg.save(tmp);
+            ZoneStore.replace(tmp, file);
+        }
+    }
+    
+    public static class BinaryZoneStore implements JournaledZoneStore {
+        private static final int DATA_MAGIC = 0x50535A44;
+        private static final int JOURNAL_MAGIC = 0x50535A4A;
+        private static final int FORMAT = 2;
+        private static final byte OP_PUT = 1;
+        private static final byte OP_DELETE = 2;
+        
+        private final Psychik plugin;
+        private final File dataFile;
+        private final File journalFile;
+        private final File yamlFile;
+        private long generation;
+        private int journalOps;
+        private boolean needsRewrite;
+        
+        public BinaryZoneStore(Psychik plugin, File dataFile, File journalFile, File yamlFile) {
+            this.plugin = plugin;
+            this.dataFile = dataFile;
+            this.journalFile = journalFile;
+            this.yamlFile = yamlFile;
+        }
+        
+        @Override
+        public Map<String, PsychikZone> load() throws IOException {
+            Map<String, PsychikZone> zones = new LinkedHashMap<>();
+            if (!dataFile.exists()) {
+                if (yamlFile.exists()) {
+                    zones.putAll(new YamlZoneStore(plugin, yamlFile).load());
+                    plugin.getLogger().info("Imported " + zones.size() + " zones from " + yamlFile.getName());
+                }
+                needsRewrite = true;
+                return zones;
+            }
+            ByteBuffer data = map(dataFile);
+            int format;
+            if (data.getInt() != DATA_MAGIC || (format = data.getInt()) < 1 || format > FORMAT) {
+                throw new IOException(dataFile.getName() + " is not a Psychik zone store");
+            }
+            if (format != FORMAT) {
+                // Starší formát se přečte a při prvním uložení přepíše
+                needsRewrite = true;
+            }
+            generation = data.getLong();
+            int count = data.getInt();
+            for (int i = 0; i < count; i++) {
+                PsychikZone z = readZone(data, format);
+                if (z != null) {
+                    zones.put(z.getName(), z);
+                }
+            }
+            if (journalFile.exists() && journalFile.length() > 0) {
+                replay(map(journalFile), zones);
+            } else {
+                needsRewrite = true;
+            }
+            return zones;
+        }
+        
+        private void replay(ByteBuffer j, Map<String, PsychikZone> zones) {
+            try {
+                int format;
+                if (j.getInt() != JOURNAL_MAGIC || (format = j.getInt()) < 1 || format > FORMAT || j.getLong() != generation) {
+                    // Žurnál patří ke starší kompakci - data už obsahují jeho změny
+                    needsRewrite = true;
+                    return;
+                }
+                while (j.hasRemaining()) {
+                    byte op = j.get();
+                    if (op == OP_PUT) {
+                        PsychikZone z = readZone(j, format);
+                        if (z != null) {
+                            zones.put(z.getName(), z);
+                        }
+                    } else if (op == OP_DELETE) {
+                        zones.remove(readString(j));
+                    } else {
+                        throw new BufferUnderflowException();
+                    }
+                    journalOps++;
+                }
+            } catch (BufferUnderflowException e) {
+                plugin.getLogger().warning("Ignoring truncated tail of " + journalFile.getName());
+                needsRewrite = true;
+            }
+        }
+        
+        @Override
+        public void write(List<PsychikZone> zones) throws IOException {
+            long next = generation + 1;
+            File tmp = new File(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                out.writeInt(DATA_MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(next);
+                out.writeInt(zones.size());
+                for (PsychikZone z : zones) {
+                    writeZone(out, z);
+                }
+                out.flush();
+                fos.getFD().sync();
+            }
+            ZoneStore.replace(tmp, dataFile);
+            generation = next;
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(journalFile))) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(generation);
+            }
+            journalOps = 0;
+            needsRewrite = false;
+        }
+        
+        @Override
+        public void append(List<Op> ops) throws IOException {
+            try (FileOutputStream fos = new FileOutputStream(journalFile, true);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                for (Op op : ops) {
+                    if (op.isDelete()) {
+                        out.writeByte(OP_DELETE);
+                        writeString(out, op.getName());
+                    } else {
+                        out.writeByte(OP_PUT);
+                        writeZone(out, op.getZone());
+                    }
+                }
+                out.flush();
+                fos.getFD().sync();
+            }
+            journalOps += ops.size();
+        }
+        
+        @Override
+        public int getJournalOps() {
+            return journalOps;
+        }
+        
+        @Override
+        public boolean needsRewrite() {
+            return needsRewrite;
+        }
+        
+        private static void writeZone(DataOutputStream out, PsychikZone z) throws IOException {
+            writeString(out, z.getName());
+            writeString(out, z.getWorldName());
+            out.writeDouble(z.getX());
+            out.writeDouble(z.getY());
+            out.writeDouble(z.getZ());
+            out.writeByte(z.getShape().ordinal());
+            out.writeDouble(z.getSize());
+            out.writeDouble(z.getMinY());
+            out.writeDouble(z.getMaxY());
+            PsychikZone.EdgeTable polygon = z.getPolygon();
+            out.writeShort(polygon != null ? polygon.size() : 0);
+            if (polygon != null) {
+                double[] xs = polygon.getXs();
+                double[] zs = polygon.getZs();
+                for (int i = 0; i < xs.length; i++) {
+                    out.writeDouble(xs[i]);
+                    out.writeDouble(zs[i]);
+                }
+            }
+            out.writeDouble(z.getGravityMultiplier());
+            out.writeDouble(z.getSpeedMultiplier());
+            out.writeDouble(z.getJumpMultiplier());
+            out.writeDouble(z.getKnockbackMultiplier());
+            out.writeDouble(z.getStaminaDrainPerSec());
+        }
+        
+        private static PsychikZone readZone(ByteBuffer b, int format) {
+            String name = readString(b);
+            String world = readString(b);
+            double x = b.getDouble();
+            double y = b.getDouble();
+            double z = b.getDouble();
+            int shape = b.get();
+            double size = b.getDouble();
+            double minY = Double.NEGATIVE_INFINITY;
+            double maxY = Double.POSITIVE_INFINITY;
+            double[] xs = null;
+            double[] zs = null;
+            if (format >= 2) {
+                minY = b.getDouble();
+                maxY = b.getDouble();
+                int points = b.getShort() & 0xFFFF;
+                if (points > 0) {
+                    xs = new double[points];
+                    zs = new double[points];
+                    for (int i = 0; i < points; i++) {
+                        xs[i] = b.getDouble();
+                        zs[i] = b.getDouble();
+                    }
+                }
+            }
+            double gravity = b.getDouble();
+            double speed = b.getDouble();
+            double jump = b.getDouble();
+            double knockback = b.getDouble();
+            double stamina = b.getDouble();
+            PsychikZone.Shape[] shapes = PsychikZone.Shape.values();
+            if (shape < 0 || shape >= shapes.length) {
+                return null;
+            }
+            PsychikZone zone = PsychikZone.create(name, world, x, y, z, shapes[shape], size);
+            if (xs != null && !zone.setPolygon(xs, zs)) {
+                return null;
+            }
+            zone.setVerticalBounds(minY, maxY);
+            zone.setGravityMultiplier(gravity);
+            zone.setSpeedMultiplier(speed);
+            zone.setJumpMultiplier(jump);
+            zone.setKnockbackMultiplier(knockback);
+            zone.setStaminaDrainPerSec(stamina);
+            return zone;
+        }
+        
+        private static void writeString(DataOutputStream out, String v) throws IOException {
+            byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        
+        private static String readString(ByteBuffer b) {
+            byte[] bytes = new byte[b.getShort() & 0xFFFF];
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        private static ByteBuffer map(File f) throws IOException {
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+        }
+    }
+    
+    public static class ZoneSaver {
+        private final Psychik plugin;
+        private final ZoneStore store;
+        private final JournaledZoneStore journal;
+        private final Supplier<List<PsychikZone>> source;
+        private final int compactThreshold;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final AtomicBoolean rewrite = new AtomicBoolean();
+        private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Psychik-ZoneSaver");
+            t.setDaemon(true);
+            return t;
+        });
+        private List<JournaledZoneStore.Op> pending = new ArrayList<>();
+        private int journalOps;
+        private volatile boolean readOnly;
+        private BukkitTask task;
+        
+        public ZoneSaver(Psychik plugin, ZoneStore store, Supplier<List<PsychikZone>> source, int compactThreshold) {
+            this.plugin = plugin;
+            this.store = store;
+            this.journal = store instanceof JournaledZoneStore ? (JournaledZoneStore) store : null;
+            this.source = source;
+            this.compactThreshold = compactThreshold;
+        }
+        
+        public void start(int minutes) {
+            journalOps = journal != null ? journal.getJournalOps() : 0;
+            if (store.needsRewrite() && !readOnly) {
+                markDirty();
+            }
+            long period = minutes > 0 ? minutes * 60L * 20L : 1L;
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flushAsync, period, period);
+        }
+        
+        public void markDirty() {
+            rewrite.set(true);
+            dirty.set(true);
+        }
+        
+        public void recordPut(PsychikZone z) {
+            if (journal != null && !readOnly) {
+                pending.add(new JournaledZoneStore.Op(z.getName(), z.copy()));
+            }
+            dirty.set(true);
+        }
+        
+        public void recordDelete(String name) {
+            if (journal != null && !readOnly) {
+                pending.add(new JournaledZoneStore.Op(name, null));
+            }
+            dirty.set(true);
+        }
+        
+        /** Stops all writes, so a store that failed to load is never overwritten with a partial registry. */
+        public void setReadOnly() {
+            readOnly = true;
+        }
+        
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+        
+        public void submit(Runnable r) {
+            io.execute(r);
+        }
+        
+        public void flushAsync() {
+            Runnable work = prepare();
+            if (work != null) {
+                io.execute(work);
+            }
+        }
+        
+        public void shutdown() {
+            if (task != null) {
+                task.cancel();
+            }
+            io.shutdown();
+            try {
+                if (!io.awaitTermination(10, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("Timed out waiting for pending zone saves");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Runnable work = prepare();
+            if (work != null) {
+                work.run();
+            }
+        }
+        
+        private Runnable prepare() {
+            if (!dirty.getAndSet(false) || readOnly) return null;
+            if (journal != null && !rewrite.get() && journalOps + pending.size() <= compactThreshold) {
+                List<JournaledZoneStore.Op> ops = pending;
+                pending = new ArrayList<>();
+                journalOps += ops.size();
+                return () -> {
+                    long start = System.nanoTime();
+                    try {
+                        journal.append(ops);
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                    Metrics.time(Metrics.SAVE, start);
+                };
+            }
+            rewrite.set(false);
+            pending.clear();
+            journalOps = 0;
+            List<PsychikZone> zones = source.get();
+            return () -> {
+                long start = System.nanoTime();
+                try {
+                    store.write(zones);
+                } catch (IOException e) {
+                    fail(e);
+                }
+                Metrics.time(Metrics.SAVE, start);
+            };
+        }
+        
+        private void fail(IOException e) {
+            markDirty();
+            plugin.getLogger().severe("Failed to save zones: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    public static class ZoneManager {
+        private final Psychik plugin;
+        private final AtomicReference<ZoneSnapshot> registry;
+        private final File zonesFile;
+        private final boolean distanceOptimization;
+        private final ZoneIndex index;
+        private final ChunkZoneCache chunkCache;
+        private final ZoneResolver resolver;
+        private final ZoneStore store;
+        private final ZoneSaver saver;
+        private Runnable changeListener;
+        
+        public ZoneManager(Psychik plugin) {
+            this.plugin = plugin;
+            this.zonesFile = new File(plugin.getDataFolder(), "zones.yml");
+            this.distanceOptimization = plugin.getConfig().getBoolean("performance.distance-optimization", true);
+            double maxDistance = distanceOptimization
+                ? Math.max(0, plugin.getConfig().getDouble("performance.max-check-distance", 100))
+                : Double.POSITIVE_INFINITY;
+            int cellSize = plugin.getConfig().getInt("performance.index-cell-size", 64);
+            this.registry = new AtomicReference<>(ZoneSnapshot.empty(cellSize));
+            this.index = new ZoneIndex(cellSize);
+            this.resolver = new ZoneResolver(plugin.getConfig().getString("zones.overlap-priority", "first"));
+            this.chunkCache = new ChunkZoneCache(plugin.getConfig().getInt("performance.chunk-cache-size", 4096), maxDistance);
+            this.store = "binary".equalsIgnoreCase(plugin.getConfig().getString("settings.storage", "yaml"))
+                ? new BinaryZoneStore(plugin, new File(plugin.getDataFolder(), "zones.dat"), new File(plugin.getDataFolder(), "zones.journal"), zonesFile)
+                : new YamlZoneStore(plugin, zonesFile);
+            this.saver = new ZoneSaver(plugin, store, this::copyZones, plugin.getConfig().getInt("settings.journal-compact-threshold", 500));
+        }
+        
+        public void startSaver() {
+            saver.start(plugin.getConfig().getInt("settings.auto-save-interval", 5));
+        }
+        
+        public void shutdown() {
+            saver.shutdown();
+        }
+        
+        public void loadZones() {
+            Map<String, PsychikZone> zones;
+            try {
+                zones = store.load();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to load zones: " + e.getMessage());
+                plugin.getLogger().severe("Zone changes will NOT be saved until the zone store loads again - fix it and restart");
+                e.printStackTrace();
+                saver.setReadOnly();
+                return;
+            }
+            for (PsychikZone z : zones.values()) {
+                if (z.isBound()) {
+                    index.add(z);
+                }
+            }
+            publish(registry.get().replaceAll(zones));
+            plugin.getLogger().info("Loaded " + zones.size() + " zones");
+        }
+        
+        public void exportYaml(Consumer<String> done) {
+            if (refuseOverwrite(zonesFile, done)) return;
+            List<PsychikZone> zones = copyZones();
+            saver.submit(() -> {
+                String result;
+                try {
+                    new YamlZoneStore(plugin, zonesFile).write(zones);
+                    result = "Exported " + zones.size() + " zones to " + zonesFile.getName();
+                } catch (IOException e) {
+                    result = "Export failed: " + e.getMessage();
+                }
+                reply(done, result);
+            });
+        }
+        
+        public void exportZones(File file, ZoneTransfer.Format format, Consumer<String> done) {
+            if (refuseOverwrite(file, done)) return;
+            List<PsychikZone> zones = copyZones();
+            saver.submit(() -> {
+                String result;
+                try {
+                    ZoneTransfer.write(file, format, zones);
+                    result = "Exported " + zones.size() + " zones to " + file.getName();
+                } catch (IOException e) {
+                    result = "Export failed: " + e.getMessage();
+                }
+                reply(done, result);
+            });
+        }
+        
+        public void importZones(File file, ZoneTransfer.Format format, boolean overwrite, Consumer<String> done) {
+            ZoneTransfer.Limits limits = new ZoneTransfer.Limits(plugin.getConfig());
+            saver.submit(() -> {
+                ZoneTransfer.Result r;
+                try {
+                    r = ZoneTransfer.read(file, format, limits, n -> reply(done, "Read " + n + " zones..."));
+                } catch (IOException e) {
+                    reply(done, "Import failed: " + e.getMessage());
+                    return;
+                }
+                if (plugin.isEnabled()) {
+                    plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        done.accept(commitImport(r, overwrite, limits));
+                        for (String error : r.getErrors()) {
+                            done.accept("  " + error);
+                        }
+                    });
+                }
+            });
+        }
+        
+        private String commitImport(ZoneTransfer.Result r, boolean overwrite, ZoneTransfer.Limits limits) {
+            Map<String, PsychikZone> current = registry.get().getZones();
+            Map<String, PsychikZone> batch = new LinkedHashMap<>();
+            Map<String, Integer> perWorld = new HashMap<>();
+            for (PsychikZone z : current.values()) {
+                perWorld.merge(z.getWorldName(), 1, Integer::sum);
+            }
+            Set<String> touched = new HashSet<>();
+            int skipped = 0;
+            int replaced = 0;
+            for (PsychikZone z : r.getZones()) {
+                PsychikZone old = current.get(z.getName());
+                if (batch.containsKey(z.getName()) || (old != null && !overwrite)) {
+                    skipped++;
+                    continue;
+                }
+                if (old != null) {
+                    perWorld.merge(old.getWorldName(), -1, Integer::sum);
+                    replaced++;
+                }
+                perWorld.merge(z.getWorldName(), 1, Integer::sum);
+                touched.add(z.getWorldName());
+                batch.put(z.getName(), z);
+            }
+            for (String world : touched) {
+                int n = perWorld.get(world);
+                if (n > limits.getMaxPerWorld()) {
+                    return "Import aborted: world '" + world + "' would have " + n
+                        + " zones (max-zones-per-world is " + limits.getMaxPerWorld() + ")";
+                }
+            }
+            addZones(batch.values());
+            return "Imported " + batch.size() + " zones (" + replaced + " replaced, " + skipped + " skipped, "
+                + r.getRejected() + " invalid)";
+        }
+        
+        /**
+         * Adds or replaces many zones with a single index rebuild, snapshot
+         * publish and save instead of one of each per zone.
+         */
+        public void addZones(Collection<PsychikZone> zones) {
+            if (zones.isEmpty()) return;
+            ZoneSnapshot current = registry.get();
+            Map<String, PsychikZone> next = new LinkedHashMap<>(current.getZones());
+            for (PsychikZone z : zones) {
+                if (!z.isBound()) {
+                    World w = plugin.getServer().getWorld(z.getWorldName());
+                    if (w != null) {
+                        z.bind(w);
+                    }
+                }
+                next.put(z.getName(), z);
+            }
+            index.clear();
+            for (PsychikZone z : next.values()) {
+                if (z.isBound()) {
+                    index.add(z);
+                }
+            }
+            chunkCache.clear();
+            publish(current.replaceAll(next));
+            saver.markDirty();
+        }
+        
+        // Po chybě načtení by export přepsal zones.yml neúplným registrem
+        private boolean refuseOverwrite(File file, Consumer<String> done) {
+            if (saver.isReadOnly() && file.getAbsoluteFile().equals(zonesFile.getAbsoluteFile())) {
+                done.accept("Export refused: zones failed to load, " + zonesFile.getName() + " is left untouched");
+                return true;
+            }
+            return false;
+        }
+        
+        private void reply(Consumer<String> done, String msg) {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, () -> done.accept(msg));
+            }
+        }
+        
+        public void saveZones() {
+            saver.markDirty();
+        }
+        
+        public List<PsychikZone> copyZones() {
+            List<PsychikZone> r = new ArrayList<>();
+            for (PsychikZone z : registry.get().getZones().values()) {
+                r.add(z.copy());
+            }
+            return r;
+        }
+        
+        public void addZone(PsychikZone z) { 
+            ZoneSnapshot current = registry.get();
+            PsychikZone old = current.getZone(z.getName());
+            if (old != null) {
+                index.remove(old);
+                chunkCache.invalidate(old);
+            }
+            if (z.isBound()) {
+                index.add(z);
+            }
+            chunkCache.invalidate(z);
+            publish(current.with(z, old));
+            saver.recordPut(z); 
+        }
+        
+        public void removeZone(String n) { 
+            ZoneSnapshot current = registry.get();
+            PsychikZone old = current.getZone(n);
+            if (old != null) {
+                index.remove(old);
+                chunkCache.invalidate(old);
+                publish(current.without(old));
+                saver.recordDelete(n);
+            }
+        }
+        
+        /**
+         * Applies the change to a copy of the zone and publishes the copy, so
+         * readers holding an older snapshot never see a half-edited zone.
+         */
+        public PsychikZone editZone(String name, Consumer<PsychikZone> change) {
+            PsychikZone old = registry.get().getZone(name);
+            if (old == null) {
+                return null;
+            }
+            PsychikZone z = old.copy();
+            change.accept(z);
+            addZone(z);
+            return z;
+        }
+        
+        public void bindWorld(World w) {
+            ZoneSnapshot current = registry.get();
+            List<PsychikZone> bound = new ArrayList<>();
+            for (PsychikZone z : current.getZones().values()) {
+                if (!z.isBound() && z.getWorldName().equals(w.getName())) {
+                    PsychikZone c = z.copy();
+                    c.bind(w);
+                    index.add(c);
+                    bound.add(c);
+                }
+            }
+            if (!bound.isEmpty()) {
+                chunkCache.dropWorld(w.getName());
+                publish(current.rebind(w.getName(), bound));
+                plugin.getLogger().info("Bound " + bound.size() + " zones to world " + w.getName());
+            }
+        }
+        
+        public void unbindWorld(World w) {
+            ZoneSnapshot current = registry.get();
+            List<PsychikZone> unbound = new ArrayList<>();
+            for (PsychikZone z : current.getZones().values()) {
+                if (z.isBound() && z.getWorldName().equals(w.getName())) {
+                    PsychikZone c = z.copy();
+                    c.unbind();
+                    unbound.add(c);
+                }
+            }
+            index.dropWorld(w.getName());
+            chunkCache.dropWorld(w.getName());
+            if (!unbound.isEmpty()) {
+                publish(current.rebind(w.getName(), unbound));
+            }
+        }
+        
+        public PsychikZone getZone(String n) { 
+            return registry.get().getZone(n); 
+        }
+        
+        /**
+         * Zones containing the location. Off the main thread this reads the
+         * current snapshot; the chunk cache and index are main-thread only.
+         */
+        public List<PsychikZone> getZonesAt(Location loc) {
+            List<PsychikZone> r = new ArrayList<>();
+            if (loc.getWorld() == null) {
+                return r;
+            }
+            if (!Bukkit.isPrimaryThread()) {
+                return registry.get().zonesAt(loc.getWorld().getName(), loc.getX(), loc.getY(), loc.getZ());
+            }
+            Collection<PsychikZone> candidates = distanceOptimization
+                ? index.candidates(loc.getWorld(), loc.getX(), loc.getZ())
+                : registry.get().getZones().values();
+            if (candidates.isEmpty()) {
+                return r;
+            }
+            ChunkZoneCache.Entry e = chunkCache.get(loc.getWorld(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4, candidates);
+            Metrics.lookup(e.getPartial().length);
+            Collections.addAll(r, e.getFull());
+            for (PsychikZone z : e.getPartial()) {
+                if (z.contains(loc)) {
+                    r.add(z);
+                }
+            }
+            return r;
+        }
+        
+        public PsychikZone getZoneAt(Location loc) {
+            ZoneResolution r = resolve(loc, null);
+            return r != null ? r.getPrimary() : null;
+        }
+        
+        /**
+         * Resolves the zones at the location. On the main thread the chunk cache
+         * is used and, with a player state, remembered for the next move;
+         * other threads fall back to the snapshot and ignore {@code st}.
+         */
+        public ZoneResolution resolve(Location loc, PlayerState st) {
+            World w = loc.getWorld();
+            if (w == null) {
+                return null;
+            }
+            if (!Bukkit.isPrimaryThread()) {
+                List<PsychikZone> l = registry.get().zonesAt(w.getName(), loc.getX(), loc.getY(), loc.getZ());
+                return resolver.resolve(l.toArray(new PsychikZone[0]), l.size());
+            }
+            Collection<PsychikZone> candidates = distanceOptimization
+                ? index.candidates(w, loc.getX(), loc.getZ())
+                : registry.get().getZones().values();
+            ChunkZoneCache.Entry e = candidates.isEmpty()
+                ? ChunkZoneCache.EMPTY
+                : chunkCache.get(w, loc.getBlockX() >> 4, loc.getBlockZ() >> 4, candidates);
+            if (st != null) {
+                st.setChunk(w, loc.getBlockX() >> 4, loc.getBlockZ() >> 4, e, chunkCache.getGeneration());
+            }
+            Metrics.lookup(e.getPartial().length);
+            return e.resolve(loc, resolver);
+        }
+        
+        public ZoneResolver getResolver() {
+            return resolver;
+        }
+        
+        private void publish(ZoneSnapshot s) {
+            registry.set(s);
+            resolver.invalidate();
+            if (changeListener != null) {
+                changeListener.run();
+            }
+        }
+        
+        public void setChangeListener(Runnable r) {
+            changeListener = r;
+        }
+        
+        public long getChunkGeneration() {
+            return chunkCache.getGeneration();
+        }
+        
+        public ZoneSnapshot getSnapshot() {
+            return registry.get();
+        }
+        
+        public Map<String, PsychikZone> getAllZones() { 
+            return registry.get().getZones(); 
+        }
+        
+        public int completeNames(String prefix, int limit, List<String> out) {
+            return registry.get().getNames().complete(prefix, limit, out);
+        }
+    }
+    
+    public static class PlayerState {
+        private World world;
+        private int blockX;
+        private int blockY;
+        private int blockZ;
+        private World chunkWorld;
+        private int chunkX;
+        private int chunkZ;
+        private ChunkZoneCache.Entry chunkEntry;
+        private long chunkGeneration;
+        private ZoneResolution resolution;
+        private double appliedSpeed = 1.0;
+        private int appliedJump = -1;
+        private double airX = Double.NaN;
+        private double airY;
+        private double airZ;
+        private long airTick;
+        private boolean hit;
+        private World safeWorld;
+        private double safeX;
+        private double safeY;
+        private double safeZ;
+        private double foodDebt;
+        private Map<String, Boolean> entryPermissions;
+        private long entryPermissionsExpire;
+        private long lastDenyMessage;
+        
+        public boolean isSameBlock(Location loc) {
+            return world == loc.getWorld()
+                && blockX == loc.getBlockX()
+                && blockY == loc.getBlockY()
+                && blockZ == loc.getBlockZ();
+        }
+        
+        public void setBlock(Location loc) {
+            world = loc.getWorld();
+            blockX = loc.getBlockX();
+            blockY = loc.getBlockY();
+            blockZ = loc.getBlockZ();
+        }
+        
+        public boolean isExactChunk(Location loc, long generation) {
+            return chunkEntry != null
+                && chunkEntry.isExact()
+                && chunkGeneration == generation
+                && chunkWorld == loc.getWorld()
+                && chunkX == loc.getBlockX() >> 4
+                && chunkZ == loc.getBlockZ() >> 4;
+        }
+        
+        public void setChunk(World w, int cx, int cz, ChunkZoneCache.Entry e, long generation) {
+            chunkWorld = w;
+            chunkX = cx;
+            chunkZ = cz;
+            chunkEntry = e;
+            chunkGeneration = generation;
+        }
+        
+        public void clearChunk() {
+            chunkEntry = null;
+        }
+        
+        public Map<String, Boolean> getEntryPermissions(long now, long ttl) {
+            if (entryPermissions == null || now >= entryPermissionsExpire) {
+                entryPermissions = new HashMap<>();
+                entryPermissionsExpire = now + ttl;
+            }
+            return entryPermissions;
+        }
+        
+        public void clearEntryPermissions() {
+            entryPermissions = null;
+        }
+        
+        public long getLastDenyMessage() { return lastDenyMessage; }
+        public void setLastDenyMessage(long v) { lastDenyMessage = v; }
+        
+        public PsychikZone getZone() { return resolution != null ? resolution.getPrimary() : null; }
+        public ZoneResolution getResolution() { return resolution; }
+        public void setResolution(ZoneResolution r) { resolution = r; }
+        public double getAppliedSpeed() { return appliedSpeed; }
+        public void setAppliedSpeed(double v) { appliedSpeed = v; }
+        public int getAppliedJump() { return appliedJump; }
+        public void setAppliedJump(int v) { appliedJump = v; }
+        
+        public double getFoodDebt() { return foodDebt; }
+        public void setFoodDebt(double v) { foodDebt = v; }
+        
+        public boolean hasAirSample() { return !Double.isNaN(airX); }
+        public double getAirX() { return airX; }
+        public double getAirY() { return airY; }
+        public double getAirZ() { return airZ; }
+        
+        public long getAirTick() { return airTick; }
+        
+        public void setAirSample(double x, double y, double z, long tick) {
+            airX = x;
+            airY = y;
+            airZ = z;
+            airTick = tick;
+        }
+        
+        public void clearAirSample() {
+            airX = Double.NaN;
+        }
+        
+        public void setSafeLocation(Location loc) {
+            safeWorld = loc.getWorld();
+            safeX = loc.getX();
+            safeY = loc.getY();
+            safeZ = loc.getZ();
+        }
+        
+        /** Last position the player was allowed to stand at in the given world, or null. */
+        public Location getSafeLocation(World w) {
+            return safeWorld == w && w != null ? new Location(w, safeX, safeY, safeZ) : null;
+        }
+        
+        public void markHit() { hit = true; }
+        
+        /** Returns whether the player took a hit since the last call. */
+        public boolean consumeHit() {
+            boolean h = hit;
+            hit = false;
+            return h;
+        }
+    }
+    
+    public static class ZoneApplier {
+        private static final Map<UUID, PlayerState> states = new ConcurrentHashMap<>();
+        private static final Map<UUID, Player> draining = new HashMap<>();
+        private static final Map<UUID, Player> gravity = new LinkedHashMap<>();
+        public static final UUID SPEED_MODIFIER_ID = UUID.fromString("5f1c8a52-3a7e-4c9b-9b7d-2f6a1e0c9d41");
+        public static final String SPEED_MODIFIER_NAME = "psychik.speed";
+        private static final int LEFTOVER_DURATION = Integer.MAX_VALUE / 2;
+        
+        public static PlayerState state(Player p) {
+            return states.computeIfAbsent(p.getUniqueId(), k -> new PlayerState());
+        }
+        
+        public static void forget(Player p) {
+            states.remove(p.getUniqueId());
+            draining.remove(p.getUniqueId());
+            gravity.remove(p.getUniqueId());
+        }
+        
+        public static void apply(Player p, ZoneResolution r) {
+            PlayerState st = state(p);
+            st.setResolution(r);
+            
+            EffectProfile z = r.getProfile();
+            if (z.getStamina() > 0) {
+                draining.put(p.getUniqueId(), p);
+            } else {
+                draining.remove(p.getUniqueId());
+            }
+            if (z.getGravity() != 1.0) {
+                gravity.put(p.getUniqueId(), p);
+            } else if (gravity.remove(p.getUniqueId()) != null) {
+                st.clearAirSample();
+            }
+            int jump = (int)((z.getJump() - 1.0) * 3);
+            update(p, st, z.getSpeed(), jump > 0 ? jump : -1);
+        }
+        
+        public static void remove(Player p) {
+            PlayerState st = states.get(p.getUniqueId());
+            if (st == null) {
+                return;
+            }
+            st.setResolution(null);
+            draining.remove(p.getUniqueId());
+            gravity.remove(p.getUniqueId());
+            st.clearAirSample();
+            st.setFoodDebt(0);
+            update(p, st, 1.0, -1);
+        }
+        
+        private static void update(Player p, PlayerState st, double speed, int jump) {
+            if (speed != st.getAppliedSpeed()) {
+                setSpeedModifier(p, speed);
+                st.setAppliedSpeed(speed);
+            }
+            st.setAppliedJump(updateEffect(p, PotionEffectType.JUMP, st.getAppliedJump(), jump));
+        }
+        
+        private static int updateEffect(Player p, PotionEffectType type, int applied, int target) {
+            if (target < 0) {
+                if (applied >= 0) {
+                    p.removePotionEffect(type);
+                }
+                return -1;
+            }
+            if (target == applied) {
+                // Efekt mohl zmizet (mléko, smrt) - znovu přidat jen pokud opravdu chybí
+                PotionEffect current = p.getPotionEffect(type);
+                if (current != null && current.getAmplifier() == target) {
+                    return target;
+                }
+            }
+            p.addPotionEffect(new PotionEffect(type, Integer.MAX_VALUE, target, false, false, false));
+            return target;
+        }
+        
+        public static void restore(Player p) {
+            setSpeedModifier(p, 1.0);
+            for (PotionEffectType type : new PotionEffectType[] { PotionEffectType.SLOW_FALLING, PotionEffectType.JUMP }) {
+                PotionEffect pe = p.getPotionEffect(type);
+                if (pe != null && pe.getDuration() > LEFTOVER_DURATION && !pe.isAmbient() && !pe.hasParticles()) {
+                    p.removePotionEffect(type);
+                }
+            }
+        }
+        
+        public static void setSpeedModifier(Player p, double multiplier) {
+            AttributeInstance spd = p.getAttribute(Attribute.GENERIC_MOVEMENT_SPEED);
+            if (spd == null) {
+                return;
+            }
+            for (AttributeModifier m : new ArrayList<>(spd.getModifiers())) {
+                if (SPEED_MODIFIER_ID.equals(m.getUniqueId()) || SPEED_MODIFIER_NAME.equals(m.getName())) {
+                    spd.removeModifier(m);
+                }
+            }
+            if (multiplier != 1.0) {
+                spd.addModifier(new AttributeModifier(SPEED_MODIFIER_ID, SPEED_MODIFIER_NAME, multiplier - 1.0, AttributeModifier.Operation.MULTIPLY_SCALAR_1));
+            }
+        }
+        
+        public static PsychikZone getCurrent(Player p) { 
+            PlayerState st = states.get(p.getUniqueId());
+            return st != null ? st.getZone() : null; 
+        }
+        
+        public static double getKnockback(Player p) {
+            PlayerState st = states.get(p.getUniqueId());
+            ZoneResolution r = st != null ? st.getResolution() : null;
+            return r != null ? r.getProfile().getKnockback() : 1.0;
+        }
+        
+        public static Collection<Player> getGravityPlayers() {
+            return gravity.values();
+        }
+        
+        public static void drainAll(int ticks) {
+            if (draining.isEmpty()) return;
+            Iterator<Player> it = draining.values().iterator();
+            while (it.hasNext()) {
+                Player p = it.next();
+                PlayerState st = states.get(p.getUniqueId());
+                if (!p.isOnline() || st == null || st.getResolution() == null) {
+                    it.remove();
+                    continue;
+                }
+                drainStamina(p, st, ticks);
+            }
+        }
+        
+        public static void drainStamina(Player p, PlayerState st, int ticks) {
+            double rate = st.getResolution().getProfile().getStamina();
+            if (rate <= 0) return;
+            double drain = rate * ticks / 20.0;
+            float sat = p.getSaturation();
+            if (sat >= drain) {
+                p.setSaturation((float) (sat - drain));
+                return;
+            }
+            if (sat > 0) {
+                p.setSaturation(0);
+            }
+            // Zbytek jde z jídla ve stejném poměru, zlomky se přenáší do dalšího volání
+            double debt = st.getFoodDebt() + drain - sat;
+            int food = (int) debt;
+            st.setFoodDebt(debt - food);
+            if (food > 0 && p.getFoodLevel() > 0) {
+                p.setFoodLevel(Math.max(0, p.getFoodLevel() - food));
+            }
+        }
+    }
+    
+    public static class ZoneCommand implements CommandExecutor, TabCompleter {
+        private static final int LIST_PAGE_SIZE = 10;
+        private static final int COMPLETION_LIMIT = 50;
+        private final Psychik plugin;
+        
+        public ZoneCommand(Psychik p) { 
+            plugin = p; 
+        }
+        
+        @Override
+        public boolean onCommand(CommandSender s, Command c, String l, String[] a) {
+            if (!s.hasPermission("psychik.admin")) { 
+                s.sendMessage(ChatColor.RED + "No permission."); 
+                return true; 
+            }
+            if (a.length == 0) { 
+                sendHelp(s); 
+                return true; 
+            }
+            switch (a[0].toLowerCase()) {
+                case "create": 
+                    return create(s, a);
+                case "delete": 
+                    return delete(s, a);
+                case "edit": 
+                    return edit(s, a);
+                case "list": 
+                    return list(s, a);
+                case "info": 
+                    return info(s, a);
+                case "export": 
+                    return export(s, a);
+                case "import": 
+                    return importZones(s, a);
+                case "stats": 
+                    return stats(s, a);
+                default: 
+                    sendHelp(s); 
+                    return true;
+            }
+        }
+        
+        private void sendHelp(CommandSender s) {
+            s.sendMessage(ChatColor.GOLD + "=== Psychik Help ===");
+            s.sendMessage(ChatColor.YELLOW + "/psychik create <name> <circle|square|sphere|cylinder|cuboid> <size> [height]");
+            s.sendMessage(ChatColor.YELLOW + "/psychik create <name> polygon <x,z> <x,z> <x,z> [x,z...]");
+            s.sendMessage(ChatColor.YELLOW + "/psychik delete <name>");
+            s.sendMessage(ChatColor.YELLOW + "/psychik edit <name> <property> <value>");
+            s.sendMessage(ChatColor.YELLOW + "/psychik list [page] [world:<name>] [near:<radius>]");
+            s.sendMessage(ChatColor.YELLOW + "/psychik info <name>");
+            s.sendMessage(ChatColor.YELLOW + "/psychik export [file.yml|file.csv|file.json]");
+            s.sendMessage(ChatColor.YELLOW + "/psychik import <file> [overwrite]");
+            s.sendMessage(ChatColor.YELLOW + "/psychik stats [reset]");
+            s.sendMessage(ChatColor.GRAY + "Properties: gravity, speed, jump, knockback, stamina, size, miny, maxy (none = unbounded)");
+        }
+        
+        private boolean create(CommandSender s, String[] a) {
+            if (!(s instanceof Player)) { 
+                s.sendMessage(ChatColor.RED + "Players only."); 
+                return true; 
+            }
+            if (a.length >= 3 && a[2].equalsIgnoreCase("polygon")) {
+                return createPolygon((Player) s, a);
+            }
+            if (a.length < 4) { 
+                s.sendMessage(ChatColor.RED + "Usage: /psychik create <name> <circle|square|sphere|cylinder|cuboid> <size> [height]"); 
+                return true; 
+            }
+            Player p = (Player)s;
+            String n = a[1];
+            if (!PsychikZone.isValidName(n)) {
+                s.sendMessage(ChatColor.RED + "Invalid name. Use letters, digits, '_' and '-'.");
+                return true;
+            }
+            double sz;
+            try { 
+                sz = Double.parseDouble(a[3]); 
+                if (sz <= 0) {
+                    s.sendMessage(ChatColor.RED + "Size must be positive.");
+                    return true;
+                }
+            } catch (NumberFormatException e) { 
+                s.sendMessage(ChatColor.RED + "Invalid size."); 
+                return true; 
+            }
+            if (plugin.getZoneManager().getZone(n) != null) { 
+                s.sendMessage(ChatColor.RED + "Zone already exists."); 
+                return true; 
+            }
+            PsychikZone.Shape sh;
+            try { 
+                sh = PsychikZone.Shape.valueOf(a[2].toUpperCase()); 
+            } catch (IllegalArgumentException e) { 
+                s.sendMessage(ChatColor.RED + "Invalid shape. Use circle, square, sphere, cylinder, cuboid or polygon."); 
+                return true; 
+            }
+            PsychikZone z = new PsychikZone(n, p.getLocation(), sh, sz);
+            if (sh == PsychikZone.Shape.CYLINDER || sh == PsychikZone.Shape.CUBOID) {
+                // Výška od nohou hráče, výchozí stejná jako průměr
+                double h = sz * 2;
+                if (a.length > 4) {
+                    try {
+                        h = Double.parseDouble(a[4]);
+                    } catch (NumberFormatException e) {
+                        h = -1;
+                    }
+                    if (h <= 0) {
+                        s.sendMessage(ChatColor.RED + "Invalid height.");
+                        return true;
+                    }
+                }
+                z.setVerticalBounds(z.getY(), z.getY() + h);
+            }
+            plugin.getZoneManager().addZone(z);
+            s.sendMessage(ChatColor.GREEN + "Zone '" + n + "' created at your location.");
+            return true;
+        }
+        
+        private boolean createPolygon(Player p, String[] a) {
+            if (a.length < 6) {
+                p.sendMessage(ChatColor.RED + "Usage: /psychik create <name> polygon <x,z> <x,z> <x,z> [x,z...]");
+                return true;
+            }
+            String n = a[1];
+            if (!PsychikZone.isValidName(n)) {
+                p.sendMessage(ChatColor.RED + "Invalid name. Use letters, digits, '_' and '-'.");
+                return true;
+            }
+            if (plugin.getZoneManager().getZone(n) != null) { 
+                p.sendMessage(ChatColor.RED + "Zone already exists."); 
+                return true; 
+            }
+            int count = a.length - 3;
+            if (count > PsychikZone.MAX_POLYGON_POINTS) {
+                p.sendMessage(ChatColor.RED + "Too many points (max " + PsychikZone.MAX_POLYGON_POINTS + ").");
+                return true;
+            }
+            double[] xs = new double[count];
+            double[] zs = new double[count];
+            double sumX = 0;
+            double sumZ = 0;
+            for (int i = 0; i < count; i++) {
+                String[] xz = a[i + 3].split(",");
+                try {
+                    xs[i] = Double.parseDouble(xz[0]);
+                    zs[i] = Double.parseDouble(xz[1]);
+                } catch (RuntimeException e) {
+                    p.sendMessage(ChatColor.RED + "Invalid point '" + a[i + 3] + "'. Use x,z.");
+                    return true;
+                }
+                sumX += xs[i];
+                sumZ += zs[i];
+            }
+            Location at = p.getLocation();
+            PsychikZone z = new PsychikZone(n, new Location(at.getWorld(), sumX / count, at.getY(), sumZ / count), PsychikZone.Shape.POLYGON, 0);
+            z.setPolygon(xs, zs);
+            plugin.getZoneManager().addZone(z);
+            p.sendMessage(ChatColor.GREEN + "Polygon zone '" + n + "' created with " + count + " points.");
+            return true;
+        }
+        
+        private boolean delete(CommandSender s, String[] a) {
+            if (a.length < 2) { 
+                s.sendMessage(ChatColor.RED + "Usage: /psychik delete <name>"); 
+                return true; 
+            }
+            if (plugin.getZoneManager().getZone(a[1]) == null) { 
+                s.sendMessage(ChatColor.RED + "Zone not found."); 
+                return true; 
+            }
+            plugin.getZoneManager().removeZone(a[1]);
+            s.sendMessage(ChatColor.GREEN + "Zone '" + a[1] + "' deleted.");
+            return true;
+        }
+        
+        private boolean edit(CommandSender s, String[] a) {
+            if (a.length < 4) { 
+                s.sendMessage(ChatColor.RED + "Usage: /psychik edit <name> <property> <value>"); 
+                return true; 
+            }
+            PsychikZone z = plugin.getZoneManager().getZone(a[1]);
+            if (z == null) { 
+                s.sendMessage(ChatColor.RED + "Zone not found."); 
+                return true; 
+            }
+            String prop = a[2].toLowerCase();
+            boolean bound = prop.equals("miny") || prop.equals("maxy");
+            double parsed;
+            if (bound && a[3].equalsIgnoreCase("none")) {
+                parsed = prop.equals("miny") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            } else {
+                try { 
+                    parsed = Double.parseDouble(a[3]); 
+                } catch (NumberFormatException e) { 
+                    s.sendMessage(ChatColor.RED + "Invalid value."); 
+                    return true; 
+                }
+            }
+            double v = parsed;
+            // Publikovaná zóna je neměnná - změna se provede na kopii
+            Consumer<PsychikZone> change;
+            switch (prop) {
+                case "gravity": 
+                    change = c -> c.setGravityMultiplier(v); 
+                    break;
+                case "speed": 
+                    if (v <= 0) {
+                        s.sendMessage(ChatColor.RED + "Speed must be positive.");
+                        return true;
+                    }
+                    change = c -> c.setSpeedMultiplier(v); 
+                    break;
+                case "jump": 
+                    change = c -> c.setJumpMultiplier(v); 
+                    break;
+                case "knockback": 
+                    change = c -> c.setKnockbackMultiplier(v); 
+                    break;
+                case "stamina": 
+                    if (v < 0) {
+                        s.sendMessage(ChatColor.RED + "Stamina drain cannot be negative.");
+                        return true;
+                    }
+                    change = c -> c.setStaminaDrainPerSec(v); 
+                    break;
+                case "size": 
+                    if (v <= 0) {
+                        s.sendMessage(ChatColor.RED + "Size must be positive.");
+                        return true;
+                    }
+                    change = c -> c.setSize(v); 
+                    break;
+                case "miny": 
+                case "maxy": 
+                    double min = prop.equals("miny") ? v : z.getMinY();
+                    double max = prop.equals("maxy") ? v : z.getMaxY();
+                    if (min > max) {
+                        s.sendMessage(ChatColor.RED + "miny must not be above maxy.");
+                        return true;
+                    }
+                    change = c -> c.setVerticalBounds(min, max); 
+                    break;
+                default: 
+                    s.sendMessage(ChatColor.RED + "Unknown property. Valid: gravity, speed, jump, knockback, stamina, size, miny, maxy"); 
+                    return true;
+            }
+            plugin.getZoneManager().editZone(z.getName(), change);
+            s.sendMessage(ChatColor.GREEN + "Zone '" + a[1] + "' updated: " + a[2] + " = " + v);
+            return true;
+        }
+        
+        private boolean list(CommandSender s, String[] a) {
+            int page = 1;
+            String world = null;
+            double near = -1;
+            for (int i = 1; i < a.length; i++) {
+                String arg = a[i].toLowerCase();
+                try {
+                    if (arg.startsWith("world:")) {
+                        world = a[i].substring(6);
+                    } else if (arg.startsWith("near:")) {
+                        near = Double.parseDouble(arg.substring(5));
+                    } else {
+                        page = Integer.parseInt(arg);
+                    }
+                } catch (NumberFormatException e) {
+                    s.sendMessage(ChatColor.RED + "Usage: /psychik list [page] [world:<name>] [near:<radius>]");
+                    return true;
+                }
+            }
+            Location origin = null;
+            if (near >= 0) {
+                if (!(s instanceof Player)) {
+                    s.sendMessage(ChatColor.RED + "near: is for players only.");
+                    return true;
+                }
+                origin = ((Player) s).getLocation();
+            }
+            ZoneSnapshot snapshot = plugin.getZoneManager().getSnapshot();
+            if (snapshot.getZones().isEmpty()) {
+                s.sendMessage(ChatColor.YELLOW + "No zones exist.");
+                return true;
+            }
+            // Jména jsou v indexu už seřazená - bez filtru se stránka čte přímo
+            ZoneNames names = snapshot.getNames();
+            List<PsychikZone> matches = new ArrayList<>();
+            double[] dist = null;
+            if (world == null && origin == null) {
+                int from = (page - 1) * LIST_PAGE_SIZE;
+                for (int i = Math.max(0, from); i < names.size() && i < from + LIST_PAGE_SIZE; i++) {
+                    matches.add(snapshot.getZone(names.get(i)));
+                }
+                sendPage(s, matches, null, page, names.size(), a);
+                return true;
+            }
+            for (int i = 0; i < names.size(); i++) {
+                PsychikZone z = snapshot.getZone(names.get(i));
+                if (world != null && !z.getWorldName().equalsIgnoreCase(world)) continue;
+                if (origin != null && (origin.getWorld() == null || !z.getWorldName().equals(origin.getWorld().getName())
+                        || Math.hypot(z.getX() - origin.getX(), z.getZ() - origin.getZ()) > near)) continue;
+                matches.add(z);
+            }
+            if (origin != null) {
+                Location o = origin;
+                matches.sort(Comparator.comparingDouble(z -> Math.hypot(z.getX() - o.getX(), z.getZ() - o.getZ())));
+                dist = new double[matches.size()];
+                for (int i = 0; i < dist.length; i++) {
+                    dist[i] = Math.hypot(matches.get(i).getX() - o.getX(), matches.get(i).getZ() - o.getZ());
+                }
+            }
+            int from = Math.max(0, (page - 1) * LIST_PAGE_SIZE);
+            int to = Math.min(matches.size(), from + LIST_PAGE_SIZE);
+            sendPage(s, from < to ? matches.subList(from, to) : Collections.emptyList(),
+                dist != null && from < to ? Arrays.copyOfRange(dist, from, to) : null, page, matches.size(), a);
+            return true;
+        }
+        
+        private void sendPage(CommandSender s, List<PsychikZone> zones, double[] dist, int page, int total, String[] a) {
+            int pages = Math.max(1, (total + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE);
+            if (total == 0) {
+                s.sendMessage(ChatColor.YELLOW + "No zones match.");
+                return;
+            }
+            if (zones.isEmpty()) {
+                s.sendMessage(ChatColor.RED + "Page " + page + " does not exist (" + pages + " pages).");
+                return;
+            }
+            s.sendMessage(ChatColor.GOLD + "Zones (" + total + ") - page " + page + "/" + pages);
+            for (int i = 0; i < zones.size(); i++) {
+                PsychikZone z = zones.get(i);
+                s.sendMessage(ChatColor.YELLOW + z.getName() + ChatColor.GRAY + " - " + z.getShape() + " "
+                    + String.format("%.1f", z.getSize()) + " in " + z.getWorldName()
+                    + String.format(" (%.0f, %.0f)", z.getX(), z.getZ())
+                    + (dist != null ? String.format(" %.0fm", dist[i]) : ""));
+            }
+            if (page < pages) {
+                StringBuilder next = new StringBuilder("/psychik list ").append(page + 1);
+                for (int i = 1; i < a.length; i++) {
+                    if (a[i].contains(":")) next.append(' ').append(a[i]);
+                }
+                s.sendMessage(ChatColor.GRAY + "Next page: " + next);
+            }
+        }
+        
+        private boolean export(CommandSender s, String[] a) {
+            if (a.length < 2) {
+                s.sendMessage(ChatColor.YELLOW + "Exporting zones to zones.yml...");
+                plugin.getZoneManager().exportYaml(msg -> s.sendMessage(ChatColor.GREEN + msg));
+                return true;
+            }
+            File file = transferFile(s, a[1]);
+            if (file == null) return true;
+            s.sendMessage(ChatColor.YELLOW + "Exporting zones to " + file.getName() + "...");
+            plugin.getZoneManager().exportZones(file, ZoneTransfer.Format.of(file.getName()), msg -> s.sendMessage(ChatColor.GREEN + msg));
+            return true;
+        }
+        
+        private boolean importZones(CommandSender s, String[] a) {
+            if (a.length < 2) {
+                s.sendMessage(ChatColor.RED + "Usage: /psychik import <file.yml|file.csv|file.json> [overwrite]");
+                return true;
+            }
+            File file = transferFile(s, a[1]);
+            if (file == null) return true;
+            if (!file.isFile()) {
+                s.sendMessage(ChatColor.RED + "File not found in the plugin folder: " + a[1]);
+                return true;
+            }
+            boolean overwrite = a.length > 2 && a[2].equalsIgnoreCase("overwrite");
+            s.sendMessage(ChatColor.YELLOW + "Importing zones from " + file.getName() + "...");
+            plugin.getZoneManager().importZones(file, ZoneTransfer.Format.of(file.getName()), overwrite, msg -> s.sendMessage(ChatColor.GREEN + msg));
+            return true;
+        }
+        
+        private File transferFile(CommandSender s, String name) {
+            // Jen soubory přímo ve složce pluginu
+            if (name.contains("/") || name.contains("\\") || name.contains("..")) {
+                s.sendMessage(ChatColor.RED + "Use a plain file name inside the plugin folder.");
+                return null;
+            }
+            if (ZoneTransfer.Format.of(name) == null) {
+                s.sendMessage(ChatColor.RED + "Unsupported format. Use .yml, .csv or .json.");
+                return null;
+            }
+            return new File(plugin.getDataFolder(), name);
+        }
+        
+        private boolean stats(CommandSender s, String[] a) {
+            if (!Metrics.isEnabled()) {
+                s.sendMessage(ChatColor.RED + "Metrics are disabled (advanced.metrics).");
+                return true;
+            }
+            if (a.length > 1 && a[1].equalsIgnoreCase("reset")) {
+                Metrics.reset();
+                s.sendMessage(ChatColor.GREEN + "Metrics reset.");
+                return true;
+            }
+            s.sendMessage(ChatColor.GOLD + "=== Psychik Stats ===");
+            for (String line : Metrics.summary()) {
+                s.sendMessage(ChatColor.YELLOW + line);
+            }
+            return true;
+        }
+        
+        private boolean info(CommandSender s, String[] a) {
+            if (a.length < 2) { 
+                s.sendMessage(ChatColor.RED + "Usage: /psychik info <name>"); 
+                return true; 
+            }
+            PsychikZone z = plugin.getZoneManager().getZone(a[1]);
+            if (z == null) { 
+                s.sendMessage(ChatColor.RED + "Zone not found."); 
+                return true; 
+            }
+            s.sendMessage(ChatColor.GOLD + "=== Zone: " + z.getName() + " ===");
+            s.sendMessage(ChatColor.YELLOW + "Shape: " + z.getShape() + " | Size: " + String.format("%.1f", z.getSize())
+                + (z.getPolygon() != null ? " | Points: " + z.getPolygon().size() : ""));
+            if (z.isVertical()) {
+                s.sendMessage(ChatColor.YELLOW + "Height: " + String.format("%.1f to %.1f", z.getBoxMinY(), z.getBoxMaxY()));
+            }
+            s.sendMessage(ChatColor.YELLOW + "Location: " + 
+                String.format("%.1f, %.1f, %.1f in %s", 
+                    z.getX(), 
+                    z.getY(), 
+                    z.getZ(),
+                    z.getWorldName() + (z.isBound() ? "" : " (not loaded)")));
+            s.sendMessage(ChatColor.YELLOW + "Gravity: " + z.getGravityMultiplier() + " | Speed: " + z.getSpeedMultiplier());
+            s.sendMessage(ChatColor.YELLOW + "Jump: " + z.getJumpMultiplier() + " | Knockback: " + z.getKnockbackMultiplier());
+            s.sendMessage(ChatColor.YELLOW + "Stamina Drain: " + z.getStaminaDrainPerSec() + "/sec");
+            return true;
+        }
+        
+        @Override
+        public List<String> onTabComplete(CommandSender s, Command c, String a, String[] args) {
+            List<String> r = new ArrayList<>();
+            if (args.length >= 2 && args[0].equalsIgnoreCase("list")) {
+                String last = args[args.length - 1].toLowerCase();
+                for (World w : plugin.getServer().getWorlds()) {
+                    String option = "world:" + w.getName();
+                    if (option.toLowerCase().startsWith(last)) {
+                        r.add(option);
+                    }
+                }
+                if ("near:".startsWith(last)) {
+                    r.add("near:");
+                }
+                return r;
+            }
+            if (args.length == 1) {
+                r.addAll(Arrays.asList("create", "delete", "edit", "list", "info", "export", "import", "stats"));
+            } else if (args.length == 2) {
+                if (args[0].equalsIgnoreCase("stats")) {
+                    r.add("reset");
+                } else if (args[0].equalsIgnoreCase("export")) {
+                    r.addAll(Arrays.asList("zones.yml", "zones.csv", "zones.json"));
+                } else if (args[0].equalsIgnoreCase("import")) {
+                    String[] files = plugin.getDataFolder().list((dir, n) -> ZoneTransfer.Format.of(n) != null);
+                    if (files != null) {
+                        r.addAll(Arrays.asList(files));
+                    }
+                } else if (args[0].equalsIgnoreCase("delete") || 
+                    args[0].equalsIgnoreCase("info") || 
+                    args[0].equalsIgnoreCase("edit")) {
+                    plugin.getZoneManager().completeNames(args[1], COMPLETION_LIMIT, r);
+                }
+            } else if (args.length == 3) {
+                if (args[0].equalsIgnoreCase("import")) {
+                    r.add("overwrite");
+                } else if (args[0].equalsIgnoreCase("create")) {
+                    r.addAll(Arrays.asList("circle", "square", "sphere", "cylinder", "cuboid", "polygon"));
+                } else if (args[0].equalsIgnoreCase("edit")) {
+                    r.addAll(Arrays.asList("gravity", "speed", "jump", "knockback", "stamina", "size", "miny", "maxy"));
+                }
+            } else if (args.length == 4) {
+                if (args[0].equalsIgnoreCase("create")) {
+                    r.add("<size>");
+                } else if (args[0].equalsIgnoreCase("edit")) {
+                    r.add("<value>");
+                }
+            }
+            return r;
+        }
+    }
+    
+    public static class MovementListener implements Listener {
+        private final Psychik plugin;
+        private final int checkInterval;
+        private final boolean async;
+        private final boolean cachePlayerZones;
+        private final Notifier notifier;
+        private final EntryGuard guard;
+        private boolean refreshScheduled;
+        
+        public MovementListener(Psychik p) { 
+            plugin = p; 
+            checkInterval = Math.max(1, p.getConfig().getInt("performance.movement-check-interval", 1));
+            async = p.getConfig().getBoolean("advanced.async-zone-checks", false);
+            cachePlayerZones = p.getConfig().getBoolean("performance.cache-player-zones", true);
+            notifier = new Notifier(p);
+            guard = p.getConfig().getBoolean("permissions.require-entry-permission", false) ? new EntryGuard(p) : null;
+        }
+        
+        public int getCheckInterval() {
+            return checkInterval;
+        }
+        
+        public boolean isAsync() {
+            return async;
+        }
+        
+        public boolean isBatched() {
+            return async || checkInterval > 1;
+        }
+        
+        @EventHandler
+        public void onMove(PlayerMoveEvent e) {
+            if (isBatched()) return;
+            
+            if (!Metrics.isEnabled()) {
+                handleMove(e);
+                return;
+            }
+            long start = System.nanoTime();
+            handleMove(e);
+            Metrics.time(Metrics.MOVE, start);
+        }
+        
+        private void handleMove(PlayerMoveEvent e) {
+            Location to = e.getTo();
+            
+            if (to == null) return;
+            
+            Player p = e.getPlayer();
+            PlayerState st = ZoneApplier.state(p);
+            
+            // Optimalizace - kontrola pouze při změně bloku
+            if (st.isSameBlock(to)) {
+                Metrics.record(Metrics.SAME_BLOCK);
+                return;
+            }
+            st.setBlock(to);
+            
+            // Celý chunk patří stále do stejné zóny - bez dalšího hledání
+            if (cachePlayerZones && st.isExactChunk(to, plugin.getZoneManager().getChunkGeneration())) {
+                Metrics.record(Metrics.EXACT_CHUNK);
+                return;
+            }
+            
+            ZoneResolution next = plugin.getZoneManager().resolve(to, st);
+            if (guard != null) {
+                PsychikZone denied = guard.deniedZone(p, st.getResolution(), next);
+                if (denied != null) {
+                    Location back;
+                    if (denied.contains(e.getFrom())) {
+                        // Hráč už v zóně stál - návrat na předchozí pozici by ho zmrazil
+                        back = guard.escape(p, denied, to);
+                    } else {
+                        // Vrátit hráče na předchozí pozici, ale nechat mu směr pohledu
+                        back = e.getFrom().clone();
+                        back.setYaw(to.getYaw());
+                        back.setPitch(to.getPitch());
+                    }
+                    e.setTo(back);
+                    st.setBlock(back);
+                    st.clearChunk();
+                    guard.deny(p, denied);
+                    return;
+                }
+                st.setSafeLocation(to);
+            }
+            transition(p, next);
+        }
+        
+        @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+        public void onTeleport(PlayerTeleportEvent e) {
+            if (guard == null || e.getTo() == null) return;
+            Player p = e.getPlayer();
+            ZoneResolution next = plugin.getZoneManager().resolve(e.getTo(), null);
+            PsychikZone denied = guard.deniedZone(p, ZoneApplier.state(p).getResolution(), next);
+            if (denied != null) {
+                e.setCancelled(true);
+                guard.deny(p, denied);
+            }
+        }
+        
+        public void refresh(Player p, Location to) {
+            PlayerState st = ZoneApplier.state(p);
+            if (st.isSameBlock(to)) {
+                return;
+            }
+            st.setBlock(to);
+            ZoneResolution next = plugin.getZoneManager().resolve(to, st);
+            if (transition(p, next) == next && guard != null) {
+                st.setSafeLocation(to);
+            }
+        }
+        
+        /**
+         * Re-applies the player's zone from scratch. Death wipes potion effects
+         * and the speed modifier while the cached state still records them.
+         */
+        public void reapply(Player p) {
+            ZoneApplier.restore(p);
+            PlayerState st = ZoneApplier.state(p);
+            st.setAppliedSpeed(1.0);
+            st.setAppliedJump(-1);
+            Location loc = p.getLocation();
+            st.setBlock(loc);
+            ZoneResolution next = plugin.getZoneManager().resolve(loc, st);
+            if (next != null && next == st.getResolution()) {
+                // Stejná zóna - bez zprávy o vstupu, jen znovu nasadit efekty
+                ZoneApplier.apply(p, next);
+            } else {
+                transition(p, next);
+            }
+        }
+        
+        /**
+         * Re-resolves every online player once per tick after the registry
+         * changed, so players standing in an edited zone get its new profile
+         * without having to move.
+         */
+        public void zonesChanged() {
+            if (refreshScheduled || !plugin.isEnabled()) return;
+            refreshScheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, Metrics.timed(Metrics.REFRESH_TASK, () -> {
+                refreshScheduled = false;
+                for (Player p : plugin.getServer().getOnlinePlayers()) {
+                    Location loc = p.getLocation();
+                    PlayerState st = ZoneApplier.state(p);
+                    st.setBlock(loc);
+                    transition(p, plugin.getZoneManager().resolve(loc, st));
+                }
+            }));
+        }
+        
+        public ZoneResolution update(Player p, Location to) {
+            return transition(p, plugin.getZoneManager().resolve(to, null));
+        }
+        
+        public ZoneResolution transition(Player p, ZoneResolution next) {
+            ZoneResolution current = ZoneApplier.state(p).getResolution();
+            if (current == next) {
+                return next;
+            }
+            PsychikZone from = current != null ? current.getPrimary() : null;
+            
+            if (next == null) {
+                ZoneApplier.remove(p);
+                Metrics.record(Metrics.EXITS);
+                notifier.left(p, from, current.getProfile());
+                return null;
+            }
+            if (guard != null) {
+                PsychikZone denied = guard.deniedZone(p, current, next);
+                if (denied != null) {
+                    guard.deny(p, denied);
+                    guard.expel(p, denied);
+                    return current;
+                }
+            }
+            ZoneApplier.apply(p, next);
+            if (from == null || !from.equals(next.getPrimary())) {
+                Metrics.record(Metrics.ENTERS);
+                notifier.entered(p, next);
+            }
+            return next;
+        }
+    }
+    
+    public static class BatchZoneTask implements Runnable {
+        private final Psychik plugin;
+        private final MovementListener listener;
+        private Player[] players = new Player[0];
+        private Location[] positions = new Location[0];
+        
+        public BatchZoneTask(Psychik plugin, MovementListener listener) {
+            this.plugin = plugin;
+            this.listener = listener;
+        }
+        
+        @Override
+        public void run() {
+            Collection<? extends Player> online = plugin.getServer().getOnlinePlayers();
+            if (players.length < online.size()) {
+                players = new Player[online.size()];
+                positions = new Location[online.size()];
+            }
+            int n = 0;
+            for (Player p : online) {
+                if (n == players.length) break;
+                players[n] = p;
+                positions[n] = p.getLocation();
+                n++;
+            }
+            for (int i = 0; i < n; i++) {
+                listener.update(players[i], positions[i]);
+                players[i] = null;
+                positions[i] = null;
+            }
+        }
+    }
+    
+    public static class AsyncZoneChecker implements Runnable {
+        private final Psychik plugin;
+        private final MovementListener listener;
+        private final int batchSize;
+        private final ThreadPoolExecutor pool;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private int cursor;
+        
+        public AsyncZoneChecker(Psychik plugin, MovementListener listener, int threads) {
+            this.plugin = plugin;
+            this.listener = listener;
+            int n = Math.max(1, threads);
+            this.batchSize = 64;
+            AtomicInteger ids = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(n * 4),
+                r -> {
+                    Thread t = new Thread(r, "Psychik-ZoneCheck-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        }
+        
+        @Override
+        public void run() {
+            // Předchozí kolo ještě běží - přeskočit, další snapshot ho dožene
+            if (inFlight.get() > 0) return;
+            Collection<? extends Player> online = plugin.getServer().getOnlinePlayers();
+            if (online.isEmpty()) return;
+            ZoneSnapshot zones = plugin.getZoneManager().getSnapshot();
+            ZoneResolver resolver = plugin.getZoneManager().getResolver();
+            Player[] players = online.toArray(new Player[0]);
+            Arrays.sort(players, Comparator.comparing(p -> p.getWorld().getName()));
+            int batches = (players.length + batchSize - 1) / batchSize;
+            int first = cursor % batches;
+            for (int k = 0; k < batches; k++) {
+                int from = ((first + k) % batches) * batchSize;
+                int to = Math.min(players.length, from + batchSize);
+                Batch b = new Batch(players, from, to);
+                inFlight.incrementAndGet();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            b.resolve(zones, resolver);
+                            if (plugin.isEnabled()) {
+                                plugin.getServer().getScheduler().runTask(plugin, Metrics.timed(Metrics.ASYNC_APPLY, b::apply));
+                            }
+                        } catch (RuntimeException e) {
+                            plugin.getLogger().severe("Async zone check failed: " + e.getMessage());
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.decrementAndGet();
+                    // Fronta je plná - příští kolo začne prvním neodeslaným batchem
+                    cursor = first + k;
+                    return;
+                }
+            }
+        }
+        
+        public void shutdown() {
+            pool.shutdownNow();
+        }
+        
+        private final class Batch {
+            private final Player[] players;
+            private final String[] worlds;
+            private final double[] xs;
+            private final double[] ys;
+            private final double[] zs;
+            private final ZoneResolution[] results;
+            
+            Batch(Player[] all, int from, int to) {
+                int n = to - from;
+                players = Arrays.copyOfRange(all, from, to);
+                worlds = new String[n];
+                xs = new double[n];
+                ys = new double[n];
+                zs = new double[n];
+                results = new ZoneResolution[n];
+                for (int i = 0; i < n; i++) {
+                    Location loc = players[i].getLocation();
+                    worlds[i] = loc.getWorld() != null ? loc.getWorld().getName() : null;
+                    xs[i] = loc.getX();
+                    ys[i] = loc.getY();
+                    zs[i] = loc.getZ();
+                }
+            }
+            
+            void resolve(ZoneSnapshot zones, ZoneResolver resolver) {
+                int[] start = new int[players.length + 1];
+                int[] hits = new int[players.length * 2];
+                PsychikZone[] found = new PsychikZone[16];
+                int i = 0;
+                while (i < players.length) {
+                    String world = worlds[i];
+                    int end = i + 1;
+                    while (end < players.length && Objects.equals(world, worlds[end])) {
+                        end++;
+                    }
+                    ZoneGeometry g = world != null ? zones.getGeometry(world) : null;
+                    if (g != null) {
+                        // Hráči jsou seřazení podle světa - celý úsek jedním průchodem
+                        hits = g.collect(xs, ys, zs, i, end, start, hits);
+                        for (int k = i; k < end; k++) {
+                            int from = start[k - i];
+                            int n = start[k - i + 1] - from;
+                            if (found.length < n) {
+                                found = new PsychikZone[n];
+                            }
+                            for (int j = 0; j < n; j++) {
+                                found[j] = g.getZone(hits[from + j]);
+                            }
+                            results[k] = resolver.resolve(found, n);
+                        }
+                    }
+                    i = end;
+                }
+            }
+            
+            void apply() {
+                for (int i = 0; i < players.length; i++) {
+                    Player p = players[i];
+                    if (!p.isOnline() || worlds[i] == null || !worlds[i].equals(p.getWorld().getName())) continue;
+                    listener.transition(p, results[i]);
+                }
+            }
+        }
+    }
+    
+    public static class WorldListener implements Listener {
+        private final Psychik plugin;
+        
+        public WorldListener(Psychik p) {
+            plugin = p;
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWorldLoad(WorldLoadEvent e) {
+            plugin.getZoneManager().bindWorld(e.getWorld());
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onWorldUnload(WorldUnloadEvent e) {
+            plugin.getZoneManager().unbindWorld(e.getWorld());
+        }
+    }
+    
+    public static class GravityTask implements Runnable {
+        // Vanilla: vy' = (vy - GRAVITY) * DRAG
+        private static final double GRAVITY = 0.08;
+        private static final double DRAG = 0.98;
+        private static final double MAX_STEP_SQ = 16.0;
+        private static final double GROUND_EPSILON = 0.05;
+        
+        private final double min;
+        private final double max;
+        private final long budgetNanos;
+        private Player[] batch = new Player[16];
+        private double[] vx = new double[16];
+        private double[] vy = new double[16];
+        private double[] vz = new double[16];
+        private int cursor;
+        private long tick;
+        
+        public GravityTask(Psychik plugin) {
+            this.min = plugin.getConfig().getDouble("effects.gravity.min-multiplier", 0.0);
+            this.max = plugin.getConfig().getDouble("effects.gravity.max-multiplier", 3.0);
+            this.budgetNanos = Math.max(50, plugin.getConfig().getLong("performance.gravity-budget-micros", 500)) * 1000L;
+        }
+        
+        @Override
+        public void run() {
+            Collection<Player> active = ZoneApplier.getGravityPlayers();
+            int total = active.size();
+            tick++;
+            if (total == 0) return;
+            Player[] players = active.toArray(new Player[0]);
+            ensureCapacity(total);
+            long deadline = System.nanoTime() + budgetNanos;
+            int start = cursor % total;
+            int n = 0;
+            int done = 0;
+            // Při vyčerpání rozpočtu pokračuje příští tick od hráče, u kterého skončil
+            while (done < total) {
+                Player p = players[(start + done) % total];
+                done++;
+                if (sample(p, n)) {
+                    batch[n++] = p;
+                }
+                if ((done & 7) == 0 && System.nanoTime() > deadline) break;
+            }
+            cursor = start + done;
+            for (int i = 0; i < n; i++) {
+                batch[i].setVelocity(new Vector(vx[i], vy[i], vz[i]));
+                batch[i] = null;
+            }
+        }
+        
+        private boolean sample(Player p, int slot) {
+            PlayerState st = ZoneApplier.state(p);
+            ZoneResolution r = st.getResolution();
+            if (r == null || !p.isOnline() || p.isFlying() || p.isGliding() || p.isSwimming()
+                    || p.isInWater() || p.isClimbing() || p.isInsideVehicle() || isGrounded(p)) {
+                st.consumeHit();
+                st.clearAirSample();
+                return false;
+            }
+            if (st.consumeHit()) {
+                // Knockback z tohoto ticku by se přepsal - změřit znovu až po něm
+                st.clearAirSample();
+                return false;
+            }
+            Location loc = p.getLocation();
+            boolean measured = st.hasAirSample();
+            // Hráč přeskočený kvůli rozpočtu má vzorek starší než jeden tick
+            long elapsed = Math.max(1, tick - st.getAirTick());
+            double dx = (loc.getX() - st.getAirX()) / elapsed;
+            double dy = (loc.getY() - st.getAirY()) / elapsed;
+            double dz = (loc.getZ() - st.getAirZ()) / elapsed;
+            st.setAirSample(loc.getX(), loc.getY(), loc.getZ(), tick);
+            if (!measured || dx * dx + dy * dy + dz * dz > MAX_STEP_SQ) {
+                // První tick ve vzduchu nebo teleport - rychlost zatím neznáme
+                return false;
+            }
+            double g = Math.max(min, Math.min(max, r.getProfile().getGravity()));
+            if (g == 1.0) return false;
+            vx[slot] = dx;
+            vy[slot] = (dy - GRAVITY * g) * DRAG;
+            vz[slot] = dz;
+            return true;
+        }
+        
+        // Player#isOnGround hlásí klient - zjistit pevný blok pod hitboxem na serveru
+        private static boolean isGrounded(Player p) {
+            BoundingBox box = p.getBoundingBox();
+            World w = p.getWorld();
+            int y = (int) Math.floor(box.getMinY() - GROUND_EPSILON);
+            for (int x = (int) Math.floor(box.getMinX()); x <= (int) Math.floor(box.getMaxX()); x++) {
+                for (int z = (int) Math.floor(box.getMinZ()); z <= (int) Math.floor(box.getMaxZ()); z++) {
+                    if (!w.getBlockAt(x, y, z).isPassable()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        private void ensureCapacity(int n) {
+            if (batch.length >= n) return;
+            int size = Math.max(n, batch.length * 2);
+            batch = new Player[size];
+            vx = new double[size];
+            vy = new double[size];
+            vz = new double[size];
+        }
+    }
+    
+    public static class CombatListener implements Listener {
+        private final Psychik plugin;
+        private final double min;
+        private final double max;
+        private final boolean scale;
+        private final Map<UUID, Double> pending = new HashMap<>();
+        private boolean clearScheduled;
+        
+        public CombatListener(Psychik plugin) {
+            this.plugin = plugin;
+            this.scale = plugin.getConfig().getBoolean("effects.knockback.enabled", true);
+            this.min = plugin.getConfig().getDouble("effects.knockback.min-multiplier", 0.0);
+            this.max = plugin.getConfig().getDouble("effects.knockback.max-multiplier", 5.0);
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onDamage(EntityDamageByEntityEvent e) {
+            if (!(e.getEntity() instanceof Player)) return;
+            Player victim = (Player) e.getEntity();
+            // GravityTask nesmí v příštím ticku přepsat knockback
+            ZoneApplier.state(victim).markHit();
+            if (!scale) return;
+            // Zóna z cache hráče - žádné hledání při každém zásahu
+            double k = ZoneApplier.getKnockback(victim);
+            if (k == 1.0) return;
+            pending.put(victim.getUniqueId(), Math.max(min, Math.min(max, k)));
+            if (!clearScheduled) {
+                clearScheduled = true;
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    pending.clear();
+                    clearScheduled = false;
+                });
+            }
+        }
+        
+        // Vanilla knockback se hráči posílá jako změna rychlosti ve stejném ticku jako zásah
+        @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+        public void onVelocity(PlayerVelocityEvent e) {
+            if (pending.isEmpty()) return;
+            Double k = pending.remove(e.getPlayer().getUniqueId());
+            if (k == null) return;
+            Vector v = e.getVelocity();
+            double y = v.getY() > 0 ? v.getY() * k : v.getY();
+            e.setVelocity(new Vector(v.getX() * k, y, v.getZ() * k));
+        }
+    }
+    
+    public static class PlayerLifecycleListener implements Listener {
+        private final Psychik plugin;
+        private final MovementListener movement;
+        
+        public PlayerLifecycleListener(Psychik plugin, MovementListener movement) {
+            this.plugin = plugin;
+            this.movement = movement;
+        }
+        
+        public void track(Player p) {
+            ZoneApplier.forget(p);
+            // Server mohl spadnout, když byl hráč v zóně - uklidit zbytky efektů
+            ZoneApplier.restore(p);
+            movement.refresh(p, p.getLocation());
+        }
+        
+        public void untrack(Player p) {
+            ZoneApplier.remove(p);
+            ZoneApplier.forget(p);
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onJoin(PlayerJoinEvent e) {
+            track(e.getPlayer());
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onQuit(PlayerQuitEvent e) {
+            untrack(e.getPlayer());
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onRespawn(PlayerRespawnEvent e) {
+            Player p = e.getPlayer();
+            // Hráč je na místě respawnu až o tick později
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (p.isOnline()) {
+                    movement.reapply(p);
+                }
+            });
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onTeleport(PlayerTeleportEvent e) {
+            if (e.getTo() != null) {
+                movement.refresh(e.getPlayer(), e.getTo());
+            }
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onChangedWorld(PlayerChangedWorldEvent e) {
+            Player p = e.getPlayer();
+            // Oprávnění bývají per-world - vstupní práva znovu ověřit
+            ZoneApplier.state(p).clearEntryPermissions();
+            movement.refresh(p, p.getLocation());
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onVehicleMove(VehicleMoveEvent e) {
+            Location to = e.getTo();
+            if (to.getBlockX() == e.getFrom().getBlockX()
+                && to.getBlockY() == e.getFrom().getBlockY()
+                && to.getBlockZ() == e.getFrom().getBlockZ()) {
+                return;
+            }
+            for (Entity passenger : e.getVehicle().getPassengers()) {
+                if (passenger instanceof Player) {
+                    movement.refresh((Player) passenger, to);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Message template compiled once from config: colors are translated and
+     * the text is split into literals and placeholder slots, so rendering is
+     * plain concatenation.
+     */
+    public static final class MessageTemplate {
+        private static final String[] PLACEHOLDERS = { "zone", "player", "gravity", "speed", "jump", "knockback", "stamina" };
+        
+        private final String[] literals;
+        private final int[] slots;
+        
+        private MessageTemplate(String[] literals, int[] slots) {
+            this.literals = literals;
+            this.slots = slots;
+        }
+        
+        public static MessageTemplate compile(String raw) {
+            String text = ChatColor.translateAlternateColorCodes('&', raw);
+            List<String> literals = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                int end = c == '%' ? text.indexOf('%', i + 1) : -1;
+                int slot = end > 0 ? Arrays.asList(PLACEHOLDERS).indexOf(text.substring(i + 1, end).toLowerCase()) : -1;
+                if (slot >= 0) {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    slots.add(slot);
+                    i = end + 1;
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            }
+            literals.add(literal.toString());
+            int[] s = new int[slots.size()];
+            for (int k = 0; k < s.length; k++) {
+                s[k] = slots.get(k);
+            }
+            return new MessageTemplate(literals.toArray(new String[0]), s);
+        }
+        
+        public String render(String zone, Player p, EffectProfile e) {
+            if (slots.length == 0) {
+                return literals[0];
+            }
+            StringBuilder sb = new StringBuilder(64).append(literals[0]);
+            for (int i = 0; i < slots.length; i++) {
+                switch (slots[i]) {
+                    case 0: sb.append(zone); break;
+                    case 1: sb.append(p.getName()); break;
+                    case 2: sb.append(e != null ? e.getGravity() : 1.0); break;
+                    case 3: sb.append(e != null ? e.getSpeed() : 1.0); break;
+                    case 4: sb.append(e != null ? e.getJump() : 1.0); break;
+                    case 5: sb.append(e != null ? e.getKnockback() : 1.0); break;
+                    default: sb.append(e != null ? e.getStamina() : 0.0); break;
+                }
+                sb.append(literals[i + 1]);
+            }
+            return sb.toString();
+        }
+    }
+    
+    public static class Notifier {
+        private static final String EFFECTS_FORMAT = "&7Gravity: &f%gravity%x &7Speed: &f%speed%x &7Jump: &f%jump%x &7Knockback: &f%knockback%x &7Stamina: &f%stamina%/s";
+        
+        private final MessageTemplate entry;
+        private final MessageTemplate exit;
+        private final MessageTemplate effects;
+        private final Sound entrySound;
+        private final Sound exitSound;
+        private final float volume;
+        private final float pitch;
+        
+        public Notifier(Psychik plugin) {
+            FileConfiguration cfg = plugin.getConfig();
+            entry = cfg.getBoolean("notifications.entry-message", true)
+                ? MessageTemplate.compile(cfg.getString("notifications.entry-format", "&aEntered zone: &f%zone%")) : null;
+            exit = cfg.getBoolean("notifications.exit-message", true)
+                ? MessageTemplate.compile(cfg.getString("notifications.exit-format", "&7Left zone: &f%zone%")) : null;
+            effects = cfg.getBoolean("notifications.show-effects", true) ? MessageTemplate.compile(EFFECTS_FORMAT) : null;
+            entrySound = sound(plugin, cfg.getString("notifications.entry-sound", ""));
+            exitSound = sound(plugin, cfg.getString("notifications.exit-sound", ""));
+            volume = (float) cfg.getDouble("notifications.sound-volume", 0.5);
+            pitch = (float) cfg.getDouble("notifications.sound-pitch", 1.0);
+        }
+        
+        public void entered(Player p, ZoneResolution r) {
+            String zone = r.getPrimary().getName();
+            if (entry != null) {
+                p.sendMessage(entry.render(zone, p, r.getProfile()));
+            }
+            if (effects != null) {
+                p.sendMessage(effects.render(zone, p, r.getProfile()));
+            }
+            if (entrySound != null) {
+                p.playSound(p.getLocation(), entrySound, volume, pitch);
+            }
+        }
+        
+        public void left(Player p, PsychikZone from, EffectProfile profile) {
+            if (exit != null) {
+                p.sendMessage(exit.render(from.getName(), p, profile));
+            }
+            if (exitSound != null) {
+                p.playSound(p.getLocation(), exitSound, volume, pitch);
+            }
+        }
+        
+        private static Sound sound(Psychik plugin, String name) {
+            if (name == null || name.isEmpty()) {
+                return null;
+            }
+            try {
+                return Sound.valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Unknown sound '" + name + "', disabled");
+                return null;
+            }
+        }
+    }
+    
+    public static class EntryGuard {
+        private static final double MARGIN = 1.0;
+        private static final int SAFE_SEARCH = 16;
+        private static final long DENY_MESSAGE_INTERVAL = 1000L;
+        
+        private final MessageTemplate permission;
+        private final MessageTemplate denied;
+        private final long ttlMillis;
+        
+        public EntryGuard(Psychik plugin) {
+            FileConfiguration cfg = plugin.getConfig();
+            permission = MessageTemplate.compile(cfg.getString("permissions.entry-permission-format", "psychik.zone.enter.%zone%"));
+            denied = MessageTemplate.compile(cfg.getString("permissions.deny-message", "&cYou are not allowed to enter &f%zone%"));
+            ttlMillis = Math.max(1, cfg.getInt("permissions.cache-seconds", 30)) * 1000L;
+        }
+        
+        /**
+         * Returns the first newly entered zone the player may not enter.
+         * Results are cached per player and zone until the TTL expires or
+         * the player joins or changes world.
+         */
+        public PsychikZone deniedZone(Player p, ZoneResolution current, ZoneResolution next) {
+            if (next == null || next == current) {
+                return null;
+            }
+            Map<String, Boolean> cache = null;
+            for (PsychikZone z : next.getZones()) {
+                if (current != null && contains(current.getZones(), z)) continue;
+                if (cache == null) {
+                    cache = ZoneApplier.state(p).getEntryPermissions(System.currentTimeMillis(), ttlMillis);
+                }
+                Boolean allowed = cache.get(z.getName());
+                if (allowed == null) {
+                    allowed = p.hasPermission(permission.render(z.getName(), p, null));
+                    cache.put(z.getName(), allowed);
+                }
+                if (!allowed) {
+                    return z;
+                }
+            }
+            return null;
+        }
+        
+        public void deny(Player p, PsychikZone z) {
+            PlayerState st = ZoneApplier.state(p);
+            long now = System.currentTimeMillis();
+            if (now - st.getLastDenyMessage() >= DENY_MESSAGE_INTERVAL) {
+                st.setLastDenyMessage(now);
+                p.sendMessage(denied.render(z.getName(), p, null));
+            }
+        }
+        
+        /**
+         * Where to send a player standing inside a denied zone: the last position
+         * they were allowed at, else a standable spot just outside the zone's
+         * bounding box, else the world spawn. Keeps the view direction.
+         */
+        public Location escape(Player p, PsychikZone z, Location loc) {
+            Location safe = ZoneApplier.state(p).getSafeLocation(loc.getWorld());
+            if (safe == null || z.contains(safe)) {
+                safe = outside(z, loc);
+            }
+            if (safe == null) {
+                safe = loc.getWorld().getSpawnLocation();
+            }
+            safe.setYaw(loc.getYaw());
+            safe.setPitch(loc.getPitch());
+            return safe;
+        }
+        
+        private static Location outside(PsychikZone z, Location loc) {
+            double x = loc.getX();
+            double zz = loc.getZ();
+            double west = x - z.getBoxMinX();
+            double east = z.getBoxMaxX() - x;
+            double north = zz - z.getBoxMinZ();
+            double south = z.getBoxMaxZ() - zz;
+            double nearest = Math.min(Math.min(west, east), Math.min(north, south));
+            if (nearest == west) {
+                x = z.getBoxMinX() - MARGIN;
+            } else if (nearest == east) {
+                x = z.getBoxMaxX() + MARGIN;
+            } else if (nearest == north) {
+                zz = z.getBoxMinZ() - MARGIN;
+            } else {
+                zz = z.getBoxMaxZ() + MARGIN;
+            }
+            World w = loc.getWorld();
+            int bx = (int) Math.floor(x);
+            int bz = (int) Math.floor(zz);
+            int base = loc.getBlockY();
+            // Nejbližší výška s pevnou zemí a dvěma volnými bloky - ne do zdi ani do voidu
+            for (int d = 0; d <= SAFE_SEARCH; d++) {
+                if (canStand(w, bx, base - d, bz)) return new Location(w, bx + 0.5, base - d, bz + 0.5);
+                if (d > 0 && canStand(w, bx, base + d, bz)) return new Location(w, bx + 0.5, base + d, bz + 0.5);
+            }
+            return null;
+        }
+        
+        private static boolean canStand(World w, int x, int y, int z) {
+            if (y <= w.getMinHeight() || y + 1 >= w.getMaxHeight()) return false;
+            Block ground = w.getBlockAt(x, y - 1, z);
+            Block feet = w.getBlockAt(x, y, z);
+            Block head = w.getBlockAt(x, y + 1, z);
+            return !ground.isPassable() && !ground.isLiquid()
+                && feet.isPassable() && !feet.isLiquid()
+                && head.isPassable() && !head.isLiquid();
+        }
+        
+        /** Moves a player who ended up inside a denied zone (join, teleport, new zone) out of it. */
+        public void expel(Player p, PsychikZone z) {
+            if (p.isInsideVehicle()) {
+                p.leaveVehicle();
+            }
+            p.teleport(escape(p, z, p.getLocation()));
+        }
+        
+        // Úprava zóny vytvoří kopii - porovnávat podle jména, ne identity
+        private static boolean contains(PsychikZone[] zones, PsychikZone z) {
+            for (PsychikZone o : zones) {
+                if (o.getName().equals(z.getName())) return true;
+            }
+            return false;
+        }
+    }
+    
+    public static class BorderRenderer implements Runnable {
+        private static final int SEGMENT_POINTS = 16;
+        
+        private static final class Perimeter {
+            private final double[] xs;
+            private final double[] zs;
+            private final double[] segX;
+            private final double[] segZ;
+            private final double[] segR;
+            
+            Perimeter(PsychikZone z, double density) {
+                double cx = z.getX();
+                double cz = z.getZ();
+                double r = z.getSize();
+                int n;
+                PsychikZone.EdgeTable polygon = z.getPolygon();
+                if (polygon != null) {
+                    double[] vx = polygon.getXs();
+                    double[] vz = polygon.getZs();
+                    int[] steps = new int[vx.length];
+                    n = 0;
+                    for (int i = 0; i < vx.length; i++) {
+                        int j = (i + 1) % vx.length;
+                        steps[i] = Math.max(1, (int) Math.ceil(Math.hypot(vx[j] - vx[i], vz[j] - vz[i]) * density));
+                        n += steps[i];
+                    }
+                    xs = new double[n];
+                    zs = new double[n];
+                    int k = 0;
+                    for (int i = 0; i < vx.length; i++) {
+                        int j = (i + 1) % vx.length;
+                        for (int t = 0; t < steps[i]; t++) {
+                            double f = (double) t / steps[i];
+                            xs[k] = vx[i] + (vx[j] - vx[i]) * f;
+                            zs[k] = vz[i] + (vz[j] - vz[i]) * f;
+                            k++;
+                        }
+                    }
+                } else if (z.getShape() == PsychikZone.Shape.CIRCLE
+                        || z.getShape() == PsychikZone.Shape.CYLINDER
+                        || z.getShape() == PsychikZone.Shape.SPHERE) {
+                    n = Math.max(8, (int) Math.ceil(2 * Math.PI * r * density));
+                    xs = new double[n];
+                    zs = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        double a = 2 * Math.PI * i / n;
+                        xs[i] = cx + Math.cos(a) * r;
+                        zs[i] = cz + Math.sin(a) * r;
+                    }
+                } else {
+                    int side = Math.max(2, (int) Math.ceil(2 * r * density));
+                    n = side * 4;
+                    xs = new double[n];
+                    zs = new double[n];
+                    for (int i = 0; i < side; i++) {
+                        double t = -r + 2 * r * i / side;
+                        xs[i] = cx + t;                 zs[i] = cz - r;
+                        xs[side + i] = cx + r;          zs[side + i] = cz + t;
+                        xs[2 * side + i] = cx - t;      zs[2 * side + i] = cz + r;
+                        xs[3 * side + i] = cx - r;      zs[3 * side + i] = cz - t;
+                    }
+                }
+                int segments = (n + SEGMENT_POINTS - 1) / SEGMENT_POINTS;
+                segX = new double[segments];
+                segZ = new double[segments];
+                segR = new double[segments];
+                for (int sIdx = 0; sIdx < segments; sIdx++) {
+                    int from = sIdx * SEGMENT_POINTS;
+                    int to = Math.min(n, from + SEGMENT_POINTS);
+                    double mx = 0, mz = 0;
+                    for (int i = from; i < to; i++) {
+                        mx += xs[i];
+                        mz += zs[i];
+                    }
+                    mx /= (to - from);
+                    mz /= (to - from);
+                    double rr = 0;
+                    for (int i = from; i < to; i++) {
+                        double dx = xs[i] - mx;
+                        double dz = zs[i] - mz;
+                        rr = Math.max(rr, dx * dx + dz * dz);
+                    }
+                    segX[sIdx] = mx;
+                    segZ[sIdx] = mz;
+                    segR[sIdx] = Math.sqrt(rr);
                 }
-            } catch (NumberFormatException e) { 
-                s.sendMessage(ChatColor.RED + "Invalid size."); 
-                return true; 
             }
-            if (plugin.getZoneManager().getZone(n) != null) { 
-                s.sendMessage(ChatColor.RED + "Zone already exists."); 
-                return true; 
+        }
+        
+        private final Psychik plugin;
+        private final Particle particle;
+        private final Object data;
+        private final double density;
+        private final int interval;
+        private final double viewDistance;
+        private final int maxParticlesPerTick;
+        private final long budgetNanos;
+        private final Map<Integer, Perimeter> perimeters = new HashMap<>();
+        private final ArrayDeque<Player> queue = new ArrayDeque<>();
+        // Index zóny, od které se pokračuje u hráče přerušeného rozpočtem
+        private final Map<UUID, Integer> resume = new HashMap<>();
+        private long cacheVersion = -1;
+        private int tick;
+        private int spawned;
+        
+        public BorderRenderer(Psychik plugin) {
+            this.plugin = plugin;
+            FileConfiguration cfg = plugin.getConfig();
+            Particle type;
+            try {
+                type = Particle.valueOf(cfg.getString("visual.border-particle-type", "REDSTONE").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Unknown border particle type, using FLAME");
+                type = Particle.FLAME;
             }
-            PsychikZone.Shape sh;
-            try { 
-                sh = PsychikZone.Shape.valueOf(a[2].toUpperCase()); 
-            } catch (IllegalArgumentException e) { 
-                s.sendMessage(ChatColor.RED + "Invalid shape. Use 'circle' or 'square'."); 
-                return true; 
+            Object d = null;
+            if (type.getDataType() == Particle.DustOptions.class) {
+                d = new Particle.DustOptions(Color.AQUA, 1.0f);
+            } else if (type.getDataType() != Void.class) {
+                plugin.getLogger().warning("Border particle " + type + " needs extra data, using FLAME");
+                type = Particle.FLAME;
             }
-            plugin.getZoneManager().addZone(new PsychikZone(n, p.getLocation(), sh, sz));
-            s.sendMessage(ChatColor.GREEN + "Zone '" + n + "' created at your location.");
-            return true;
+            this.particle = type;
+            this.data = d;
+            this.density = Math.max(0.05, cfg.getDouble("visual.particle-density", 0.5));
+            this.interval = Math.max(1, cfg.getInt("visual.particle-interval", 2) * 20);
+            this.viewDistance = Math.max(8, cfg.getDouble("visual.view-distance", 48));
+            this.maxParticlesPerTick = Math.max(1, cfg.getInt("visual.max-particles-per-tick", 400));
+            this.budgetNanos = Math.max(50, cfg.getLong("visual.max-render-micros", 500)) * 1000L;
         }
         
-        private boolean delete(CommandSender s, String[] a) {
-            if (a.length < 2) { 
-                s.sendMessage(ChatColor.RED + "Usage: /psychik delete <name>"); 
-                return true; 
+        @Override
+        public void run() {
+            if (tick++ % interval == 0 && queue.isEmpty()) {
+                queue.addAll(plugin.getServer().getOnlinePlayers());
             }
-            if (plugin.getZoneManager().getZone(a[1]) == null) { 
-                s.sendMessage(ChatColor.RED + "Zone not found."); 
-                return true; 
+            if (queue.isEmpty()) return;
+            ZoneSnapshot snapshot = plugin.getZoneManager().getSnapshot();
+            if (snapshot.getVersion() != cacheVersion) {
+                perimeters.clear();
+                // Indexy zón v nové geometrii neplatí
+                resume.clear();
+                cacheVersion = snapshot.getVersion();
+            }
+            long deadline = System.nanoTime() + budgetNanos;
+            int budget = maxParticlesPerTick;
+            while (!queue.isEmpty() && budget > 0 && System.nanoTime() < deadline) {
+                Player p = queue.poll();
+                Integer start = resume.remove(p.getUniqueId());
+                if (!p.isOnline()) continue;
+                int next = render(p, snapshot, start != null ? start : 0, budget, deadline);
+                budget -= spawned;
+                if (next >= 0) {
+                    resume.put(p.getUniqueId(), next);
+                    queue.addFirst(p);
+                }
             }
-            plugin.getZoneManager().removeZone(a[1]);
-            s.sendMessage(ChatColor.GREEN + "Zone '" + a[1] + "' deleted.");
-            return true;
         }
         
-        private boolean edit(CommandSender s, String[] a) {
-            if (a.length < 4) { 
-                s.sendMessage(ChatColor.RED + "Usage: /psychik edit <name> <property> <value>"); 
-                return true; 
+        /**
+         * Draws zones of the player's world starting at zone index {@code start}.
+         * Returns the index to resume from when the particle budget or the
+         * deadline ran out, or -1 when every zone was handled.
+         */
+        private int render(Player p, ZoneSnapshot snapshot, int start, int budget, long deadline) {
+            spawned = 0;
+            Location loc = p.getLocation();
+            ZoneGeometry g = snapshot.getGeometry(p.getWorld().getName());
+            if (g == null) return -1;
+            double px = loc.getX();
+            double py = loc.getY() + 1.0;
+            double pz = loc.getZ();
+            double vd2 = viewDistance * viewDistance;
+            boolean drawn = false;
+            for (int id = start; id < g.size(); id++) {
+                if (spawned >= budget) return id;
+                // Čas kontrolovat po každé vykreslené zóně a jinak jen občas
+                if ((drawn || (id & 15) == 0) && id > start && System.nanoTime() >= deadline) return id;
+                drawn = false;
+                PsychikZone z = g.getZone(id);
+                double dx = Math.max(0, Math.max(z.getBoxMinX() - px, px - z.getBoxMaxX()));
+                double dz = Math.max(0, Math.max(z.getBoxMinZ() - pz, pz - z.getBoxMaxZ()));
+                // Hranice se kreslí ve výšce hráče, omezené na výškový rozsah zóny
+                double ry = Math.max(z.getBoxMinY(), Math.min(py, z.getBoxMaxY()));
+                double dy = ry - py;
+                if (dx * dx + dy * dy + dz * dz > vd2) continue;
+                drawn = true;
+                Perimeter per = perimeters.computeIfAbsent(z.getId(), k -> new Perimeter(z, density));
+                for (int sIdx = 0; sIdx < per.segX.length && spawned < budget; sIdx++) {
+                    double sd = Math.hypot(px - per.segX[sIdx], pz - per.segZ[sIdx]) - per.segR[sIdx];
+                    if (sd > viewDistance) continue;
+                    int to = Math.min(per.xs.length, (sIdx + 1) * SEGMENT_POINTS);
+                    for (int i = sIdx * SEGMENT_POINTS; i < to && spawned < budget; i++) {
+                        double ex = per.xs[i] - px;
+                        double ez = per.zs[i] - pz;
+                        if (ex * ex + ez * ez <= vd2) {
+                            p.spawnParticle(particle, per.xs[i], ry, per.zs[i], 1, 0, 0, 0, 0, data);
+                            spawned++;
+                        }
+                    }
+                }
             }
-            PsychikZone z = plugin.getZoneManager().getZone(a[1]);
-            if (z == null) { 
-                s.sendMessage(ChatColor.RED + "Zone not found."); 
-                return true; 
+            return -1;
+        }
+    }
+    
+    public static final class Metrics {
+        public static final class Histogram {
+            // Bucket i = hodnoty v intervalu [2^i, 2^(i+1)) ns
+            private final LongAdder[] buckets = new LongAdder[64];
+            private final LongAdder count = new LongAdder();
+            private final LongAdder total = new LongAdder();
+            private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+            
+            Histogram() {
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = new LongAdder();
+                }
             }
-            double v;
-            try { 
-                v = Double.parseDouble(a[3]); 
-            } catch (NumberFormatException e) { 
-                s.sendMessage(ChatColor.RED + "Invalid value."); 
-                return true; 
+            
+            public void record(long nanos) {
+                buckets[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+                count.increment();
+                total.add(nanos);
+                max.accumulate(nanos);
             }
-            switch (a[2].toLowerCase()) {
-                case "gravity": 
-                    z.setGravityMultiplier(v); 
-                    break;
-                case "speed": 
-                    if (v <= 0) {
-                        s.sendMessage(ChatColor.RED + "Speed must be positive.");
-                        return true;
-                    }
-                    z.setSpeedMultiplier(v); 
-                    break;
-                case "jump": 
-                    z.setJumpMultiplier(v); 
-                    break;
-                case "knockback": 
-                    z.setKnockbackMultiplier(v); 
-                    break;
-                case "stamina": 
-                    if (v < 0) {
-                        s.sendMessage(ChatColor.RED + "Stamina drain cannot be negative.");
-                        return true;
-                    }
-                    z.setStaminaDrainPerSec(v); 
-                    break;
-                case "size": 
-                    if (v <= 0) {
-                        s.sendMessage(ChatColor.RED + "Size must be positive.");
-                        return true;
+            
+            public long getCount() { return count.sum(); }
+            public long getMax() { return max.get(); }
+            
+            public double getMean() {
+                long n = count.sum();
+                return n == 0 ? 0 : (double) total.sum() / n;
+            }
+            
+            public long percentile(double q) {
+                long[] snap = new long[buckets.length];
+                long n = 0;
+                for (int i = 0; i < snap.length; i++) {
+                    snap[i] = buckets[i].sum();
+                    n += snap[i];
+                }
+                long rank = (long) Math.ceil(q * n);
+                long seen = 0;
+                for (int i = 0; i < snap.length; i++) {
+                    seen += snap[i];
+                    if (seen >= rank && snap[i] > 0) {
+                        return 1L << Math.min(i + 1, 62);
                     }
-                    z.setSize(v); 
-                    break;
-                default: 
-                    s.sendMessage(ChatColor.RED + "Unknown property. Valid: gravity, speed, jump, knockback, stamina, size"); 
-                    return true;
+                }
+                return 0;
+            }
+            
+            void reset() {
+                for (LongAdder b : buckets) {
+                    b.reset();
+                }
+                count.reset();
+                total.reset();
+                max.reset();
             }
-            plugin.getZoneManager().saveZones();
-            s.sendMessage(ChatColor.GREEN + "Zone '" + a[1] + "' updated: " + a[2] + " = " + v);
-            return true;
         }
         
-        private boolean list(CommandSender s) {
-            Map<String, PsychikZone> zones = plugin.getZoneManager().getAllZones();
-            if (zones.isEmpty()) {
-                s.sendMessage(ChatColor.YELLOW + "No zones exist.");
-                return true;
+        public static final Histogram MOVE = new Histogram();
+        public static final Histogram SAVE = new Histogram();
+        // Naplánované úlohy - čas jednoho běhu v ticku
+        public static final Histogram BATCH_TASK = new Histogram();
+        public static final Histogram ASYNC_TASK = new Histogram();
+        public static final Histogram ASYNC_APPLY = new Histogram();
+        public static final Histogram GRAVITY_TASK = new Histogram();
+        public static final Histogram BORDER_TASK = new Histogram();
+        public static final Histogram STAMINA_TASK = new Histogram();
+        public static final Histogram REFRESH_TASK = new Histogram();
+        public static final LongAdder LOOKUPS = new LongAdder();
+        public static final LongAdder ZONES_TESTED = new LongAdder();
+        public static final LongAdder CHUNK_HITS = new LongAdder();
+        public static final LongAdder CHUNK_MISSES = new LongAdder();
+        public static final LongAdder MEMO_HITS = new LongAdder();
+        public static final LongAdder MEMO_MISSES = new LongAdder();
+        public static final LongAdder SAME_BLOCK = new LongAdder();
+        public static final LongAdder EXACT_CHUNK = new LongAdder();
+        public static final LongAdder ENTERS = new LongAdder();
+        public static final LongAdder EXITS = new LongAdder();
+        
+        private static final LongAdder[] COUNTERS = {
+            LOOKUPS, ZONES_TESTED, CHUNK_HITS, CHUNK_MISSES, MEMO_HITS, MEMO_MISSES,
+            SAME_BLOCK, EXACT_CHUNK, ENTERS, EXITS
+        };
+        private static final Histogram[] TASKS = {
+            BATCH_TASK, ASYNC_TASK, ASYNC_APPLY, GRAVITY_TASK, BORDER_TASK, STAMINA_TASK, REFRESH_TASK
+        };
+        private static final String[] TASK_NAMES = {
+            "batch checks", "async dispatch", "async apply", "gravity", "borders", "stamina", "zone refresh"
+        };
+        
+        private static volatile boolean enabled;
+        private static volatile long since = System.currentTimeMillis();
+        
+        private Metrics() {
+        }
+        
+        public static boolean isEnabled() {
+            return enabled;
+        }
+        
+        public static void setEnabled(boolean v) {
+            enabled = v;
+        }
+        
+        public static void record(LongAdder counter) {
+            if (enabled) {
+                counter.increment();
             }
-            s.sendMessage(ChatColor.GOLD + "Zones (" + zones.size() + "): " + ChatColor.YELLOW + String.join(", ", zones.keySet()));
-            return true;
         }
         
-        private boolean info(CommandSender s, String[] a) {
-            if (a.length < 2) { 
-                s.sendMessage(ChatColor.RED + "Usage: /psychik info <name>"); 
-                return true; 
+        public static void lookup(int tested) {
+            if (enabled) {
+                LOOKUPS.increment();
+                ZONES_TESTED.add(tested);
             }
-            PsychikZone z = plugin.getZoneManager().getZone(a[1]);
-            if (z == null) { 
-                s.sendMessage(ChatColor.RED + "Zone not found."); 
-                return true; 
+        }
+        
+        public static void time(Histogram h, long start) {
+            if (enabled) {
+                h.record(System.nanoTime() - start);
             }
-            s.sendMessage(ChatColor.GOLD + "=== Zone: " + z.getName() + " ===");
-            s.sendMessage(ChatColor.YELLOW + "Shape: " + z.getShape() + " | Size: " + z.getSize());
-            s.sendMessage(ChatColor.YELLOW + "Location: " + 
-                String.format("%.1f, %.1f, %.1f in %s", 
-                    z.getCenter().getX(), 
-                    z.getCenter().getY(), 
-                    z.getCenter().getZ(),
-                    z.getCenter().getWorld().getName()));
-            s.sendMessage(ChatColor.YELLOW + "Gravity: " + z.getGravityMultiplier() + " | Speed: " + z.getSpeedMultiplier());
-            s.sendMessage(ChatColor.YELLOW + "Jump: " + z.getJumpMultiplier() + " | Knockback: " + z.getKnockbackMultiplier());
-            s.sendMessage(ChatColor.YELLOW + "Stamina Drain: " + z.getStaminaDrainPerSec() + "/sec");
-            return true;
         }
         
-        @Override
-        public List<String> onTabComplete(CommandSender s, Command c, String a, String[] args) {
-            List<String> r = new ArrayList<>();
-            if (args.length == 1) {
-                r.addAll(Arrays.asList("create", "delete", "edit", "list", "info"));
-            } else if (args.length == 2) {
-                if (args[0].equalsIgnoreCase("delete") || 
-                    args[0].equalsIgnoreCase("info") || 
-                    args[0].equalsIgnoreCase("edit")) {
-                    r.addAll(plugin.getZoneManager().getAllZones().keySet());
+        /** Wraps a scheduled task so each run is recorded in {@code h}. */
+        public static Runnable timed(Histogram h, Runnable task) {
+            return () -> {
+                if (!enabled) {
+                    task.run();
+                    return;
                 }
-            } else if (args.length == 3) {
-                if (args[0].equalsIgnoreCase("create")) {
-                    r.addAll(Arrays.asList("circle", "square"));
-                } else if (args[0].equalsIgnoreCase("edit")) {
-                    r.addAll(Arrays.asList("gravity", "speed", "jump", "knockback", "stamina", "size"));
+                long start = System.nanoTime();
+                task.run();
+                time(h, start);
+            };
+        }
+        
+        public static void reset() {
+            for (LongAdder c : COUNTERS) {
+                c.reset();
+            }
+            MOVE.reset();
+            SAVE.reset();
+            for (Histogram h : TASKS) {
+                h.reset();
+            }
+            since = System.currentTimeMillis();
+        }
+        
+        public static List<String> summary() {
+            List<String> r = new ArrayList<>();
+            long lookups = LOOKUPS.sum();
+            r.add(String.format("Uptime: %ds", (System.currentTimeMillis() - since) / 1000));
+            r.add(String.format("Move events: %d | avg %.1fus | p50 <%dus | p99 <%dus | max %dus",
+                MOVE.getCount(), MOVE.getMean() / 1000.0, MOVE.percentile(0.5) / 1000, MOVE.percentile(0.99) / 1000, MOVE.getMax() / 1000));
+            r.add(String.format("Skipped moves: same block %d | exact chunk %d", SAME_BLOCK.sum(), EXACT_CHUNK.sum()));
+            r.add(String.format("Zone lookups: %d | avg zones tested %.2f",
+                lookups, lookups == 0 ? 0.0 : (double) ZONES_TESTED.sum() / lookups));
+            r.add(String.format("Chunk cache hit rate: %s | resolution memo hit rate: %s",
+                rate(CHUNK_HITS.sum(), CHUNK_MISSES.sum()), rate(MEMO_HITS.sum(), MEMO_MISSES.sum())));
+            r.add(String.format("Transitions: %d entered | %d left", ENTERS.sum(), EXITS.sum()));
+            r.add(String.format("Saves: %d | avg %.2fms | max %.2fms",
+                SAVE.getCount(), SAVE.getMean() / 1e6, SAVE.getMax() / 1e6));
+            for (int i = 0; i < TASKS.length; i++) {
+                Histogram h = TASKS[i];
+                if (h.getCount() == 0) continue;
+                r.add(String.format("Task %s: %d runs | avg %.1fus | p99 <%dus | max %dus",
+                    TASK_NAMES[i], h.getCount(), h.getMean() / 1000.0, h.percentile(0.99) / 1000, h.getMax() / 1000));
+            }
+            return r;
+        }
+        
+        public static void dump(Psychik plugin, boolean csv) {
+            if (!csv) {
+                for (String line : summary()) {
+                    plugin.getLogger().info("[stats] " + line);
                 }
-            } else if (args.length == 4) {
-                if (args[0].equalsIgnoreCase("create")) {
-                    r.add("<size>");
-                } else if (args[0].equalsIgnoreCase("edit")) {
-                    r.add("<value>");
+                return;
+            }
+            File file = new File(plugin.getDataFolder(), "metrics.csv");
+            boolean header = !file.exists();
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                if (header) {
+                    out.println("time,moves,move_avg_ns,move_p99_ns,move_max_ns,same_block,exact_chunk,lookups,zones_tested,"
+                        + "chunk_hits,chunk_misses,memo_hits,memo_misses,enters,exits,saves,save_avg_ns,save_max_ns");
                 }
+                out.println(System.currentTimeMillis() + "," + MOVE.getCount() + "," + (long) MOVE.getMean() + ","
+                    + MOVE.percentile(0.99) + "," + MOVE.getMax() + "," + SAME_BLOCK.sum() + "," + EXACT_CHUNK.sum() + ","
+                    + LOOKUPS.sum() + "," + ZONES_TESTED.sum() + "," + CHUNK_HITS.sum() + "," + CHUNK_MISSES.sum() + ","
+                    + MEMO_HITS.sum() + "," + MEMO_MISSES.sum() + "," + ENTERS.sum() + "," + EXITS.sum() + ","
+                    + SAVE.getCount() + "," + (long) SAVE.getMean() + "," + SAVE.getMax());
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not write metrics.csv: " + e.getMessage());
             }
-            return r;
+        }
+        
+        private static String rate(long hits, long misses) {
+            long n = hits + misses;
+            return n == 0 ? "-" : String.format("%.1f%%", hits * 100.0 / n);
         }
     }
     
-    public static class MovementListener implements Listener {
-        private final Psychik plugin;
+    public static final class ZoneTransfer {
+        public static final int CHUNK = 500;
+        private static final String[] CSV_HEADER = {
+            "name", "world", "x", "y", "z", "shape", "size", "min_y", "max_y", "points",
+            "gravity", "speed", "jump", "knockback", "stamina"
+        };
         
-        public MovementListener(Psychik p) { 
-            plugin = p; 
+        public enum Format {
+            YAML, CSV, JSON;
+            
+            public static Format of(String fileName) {
+                String n = fileName.toLowerCase();
+                if (n.endsWith(".yml") || n.endsWith(".yaml")) return YAML;
+                if (n.endsWith(".csv")) return CSV;
+                if (n.endsWith(".json")) return JSON;
+                return null;
+            }
         }
         
-        @EventHandler
-        public void onMove(PlayerMoveEvent e) {
-            Location from = e.getFrom();
-            Location to = e.getTo();
+        /** Per-zone rules checked while reading, before anything touches the live registry. */
+        public static final class Limits {
+            private final double minSize;
+            private final double maxSize;
+            private final int maxPerWorld;
             
-            if (to == null) return;
+            public Limits(FileConfiguration cfg) {
+                this.minSize = cfg.getDouble("zones.min-zone-size", 1);
+                this.maxSize = cfg.getDouble("zones.max-zone-size", 500);
+                this.maxPerWorld = cfg.getInt("zones.max-zones-per-world", 50);
+            }
             
-            // Optimalizace - kontrola pouze při změně bloku
-            if (from.getBlockX() == to.getBlockX() && 
-                from.getBlockY() == to.getBlockY() && 
-                from.getBlockZ() == to.getBlockZ()) {
-                Player p = e.getPlayer();
-                PsychikZone current = ZoneApplier.getCurrent(p);
-                if (current != null) {
-                    ZoneApplier.drainStamina(p, current);
+            public int getMaxPerWorld() {
+                return maxPerWorld;
+            }
+            
+            String check(PsychikZone z) {
+                if (!PsychikZone.isValidName(z.getName())) {
+                    return "invalid name";
                 }
-                return;
+                if (z.getSize() < minSize || z.getSize() > maxSize) {
+                    return "size " + z.getSize() + " outside " + minSize + "-" + maxSize;
+                }
+                if (z.getMinY() > z.getMaxY()) {
+                    return "min-y above max-y";
+                }
+                return null;
             }
+        }
+        
+        public static final class Result {
+            private final List<PsychikZone> zones = new ArrayList<>();
+            private final List<String> errors = new ArrayList<>();
+            private int rejected;
             
-            Player p = e.getPlayer();
-            List<PsychikZone> zones = plugin.getZoneManager().getZonesAt(to);
-            PsychikZone current = ZoneApplier.getCurrent(p);
+            boolean accept(PsychikZone z, String where, Limits limits) {
+                String problem = z == null ? "unreadable zone" : limits.check(z);
+                if (problem == null) {
+                    zones.add(z);
+                    return true;
+                }
+                reject(where + ": " + problem);
+                return false;
+            }
             
-            if (zones.isEmpty()) {
-                if (current != null) {
-                    ZoneApplier.remove(p);
-                    p.sendMessage(ChatColor.GRAY + "Left zone: " + current.getName());
+            void reject(String error) {
+                rejected++;
+                if (errors.size() < 10) {
+                    errors.add(error);
                 }
-            } else {
-                PsychikZone newZone = zones.get(0);
-                if (current == null || !current.equals(newZone)) {
-                    if (current != null) {
-                        ZoneApplier.remove(p);
-                    }
-                    ZoneApplier.apply(p, newZone);
-                    p.sendMessage(ChatColor.GREEN + "Entered zone: " + newZone.getName());
+            }
+            
+            public List<PsychikZone> getZones() { return zones; }
+            public List<String> getErrors() { return errors; }
+            public int getRejected() { return rejected; }
+        }
+        
+        private ZoneTransfer() {
+        }
+        
+        public static Result read(File file, Format format, Limits limits, IntConsumer progress) throws IOException {
+            Result r = new Result();
+            switch (format) {
+                case CSV:
+                    readCsv(file, limits, r, progress);
+                    break;
+                case JSON:
+                    readJson(file, limits, r, progress);
+                    break;
+                default:
+                    readYaml(file, limits, r, progress);
+                    break;
+            }
+            return r;
+        }
+        
+        public static void write(File file, Format format, List<PsychikZone> zones) throws IOException {
+            if (format == Format.YAML) {
+                FileConfiguration cfg = new YamlConfiguration();
+                for (PsychikZone z : zones) {
+                    z.saveToConfig(cfg.createSection("zones." + z.getName()));
+                }
+                cfg.save(file);
+                return;
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                if (format == Format.CSV) {
+                    writeCsv(out, zones);
                 } else {
-                    ZoneApplier.drainStamina(p, newZone);
+                    writeJson(out, zones);
+                }
+            }
+        }
+        
+        private static void readYaml(File file, Limits limits, Result r, IntConsumer progress) {
+            FileConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+            ConfigurationSection sec = cfg.getConfigurationSection("zones");
+            if (sec == null) {
+                return;
+            }
+            for (String n : sec.getKeys(false)) {
+                ConfigurationSection zs = sec.getConfigurationSection(n);
+                if (r.accept(zs != null ? PsychikZone.readFromConfig(n, zs) : null, n, limits)) {
+                    tick(r, progress);
+                }
+            }
+        }
+        
+        private static void readCsv(File file, Limits limits, Result r, IntConsumer progress) throws IOException {
+            try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                int row = 0;
+                while ((line = in.readLine()) != null) {
+                    row++;
+                    if (line.trim().isEmpty() || (row == 1 && line.startsWith(CSV_HEADER[0]))) continue;
+                    String[] c = line.split(",", -1);
+                    if (c.length < CSV_HEADER.length) {
+                        r.reject("line " + row + ": expected " + CSV_HEADER.length + " columns");
+                        continue;
+                    }
+                    PsychikZone z;
+                    try {
+                        z = zone(c[0].trim(), c[1].trim(), num(c[2]), num(c[3]), num(c[4]), c[5].trim(), num(c[6]));
+                        if (z != null) {
+                            z.setVerticalBounds(bound(c[7], Double.NEGATIVE_INFINITY), bound(c[8], Double.POSITIVE_INFINITY));
+                            if (!c[9].trim().isEmpty() && !polygon(z, c[9].trim().split(";"), ":")) {
+                                z = null;
+                            }
+                        }
+                        if (z != null) {
+                            effects(z, num(c[10]), num(c[11]), num(c[12]), num(c[13]), num(c[14]));
+                        }
+                    } catch (RuntimeException e) {
+                        r.reject("line " + row + ": " + e.getMessage());
+                        continue;
+                    }
+                    if (r.accept(z, "line " + row, limits)) {
+                        tick(r, progress);
+                    }
+                }
+            }
+        }
+        
+        private static void readJson(File file, Limits limits, Result r, IntConsumer progress) throws IOException {
+            try (JsonReader in = new JsonReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))) {
+                in.beginArray();
+                int index = 0;
+                while (in.hasNext()) {
+                    JsonObject o;
+                    try {
+                        o = JsonParser.parseReader(in).getAsJsonObject();
+                    } catch (RuntimeException e) {
+                        throw new IOException("Malformed JSON at zone #" + index + ": " + e.getMessage());
+                    }
+                    index++;
+                    PsychikZone z;
+                    try {
+                        z = zone(str(o, "name"), str(o, "world"), dbl(o, "x", 0), dbl(o, "y", 0), dbl(o, "z", 0),
+                            str(o, "shape"), dbl(o, "size", 0));
+                        if (z != null) {
+                            z.setVerticalBounds(dbl(o, "minY", Double.NEGATIVE_INFINITY), dbl(o, "maxY", Double.POSITIVE_INFINITY));
+                            if (o.has("points")) {
+                                JsonArray pts = o.getAsJsonArray("points");
+                                String[] raw = new String[pts.size()];
+                                for (int i = 0; i < raw.length; i++) {
+                                    JsonArray p = pts.get(i).getAsJsonArray();
+                                    raw[i] = p.get(0).getAsDouble() + ":" + p.get(1).getAsDouble();
+                                }
+                                if (!polygon(z, raw, ":")) {
+                                    z = null;
+                                }
+                            }
+                        }
+                        if (z != null) {
+                            effects(z, dbl(o, "gravity", 1), dbl(o, "speed", 1), dbl(o, "jump", 1),
+                                dbl(o, "knockback", 1), dbl(o, "stamina", 0));
+                        }
+                    } catch (RuntimeException e) {
+                        r.reject("zone #" + index + ": " + e.getMessage());
+                        continue;
+                    }
+                    if (r.accept(z, "zone #" + index, limits)) {
+                        tick(r, progress);
+                    }
+                }
+                in.endArray();
+            }
+        }
+        
+        private static void writeCsv(BufferedWriter out, List<PsychikZone> zones) throws IOException {
+            out.write(String.join(",", CSV_HEADER));
+            out.newLine();
+            for (PsychikZone z : zones) {
+                StringBuilder points = new StringBuilder();
+                PsychikZone.EdgeTable poly = z.getPolygon();
+                if (poly != null) {
+                    double[] xs = poly.getXs();
+                    double[] zs = poly.getZs();
+                    for (int i = 0; i < xs.length; i++) {
+                        if (i > 0) points.append(';');
+                        points.append(xs[i]).append(':').append(zs[i]);
+                    }
+                }
+                out.write(z.getName() + "," + z.getWorldName() + "," + z.getX() + "," + z.getY() + "," + z.getZ() + ","
+                    + z.getShape().name() + "," + z.getSize() + ","
+                    + (z.getMinY() != Double.NEGATIVE_INFINITY ? String.valueOf(z.getMinY()) : "") + ","
+                    + (z.getMaxY() != Double.POSITIVE_INFINITY ? String.valueOf(z.getMaxY()) : "") + ","
+                    + points + "," + z.getGravityMultiplier() + "," + z.getSpeedMultiplier() + ","
+                    + z.getJumpMultiplier() + "," + z.getKnockbackMultiplier() + "," + z.getStaminaDrainPerSec());
+                out.newLine();
+            }
+        }
+        
+        private static void writeJson(BufferedWriter w, List<PsychikZone> zones) throws IOException {
+            JsonWriter out = new JsonWriter(w);
+            out.setIndent("  ");
+            out.beginArray();
+            for (PsychikZone z : zones) {
+                out.beginObject();
+                out.name("name").value(z.getName());
+                out.name("world").value(z.getWorldName());
+                out.name("x").value(z.getX());
+                out.name("y").value(z.getY());
+                out.name("z").value(z.getZ());
+                out.name("shape").value(z.getShape().name());
+                out.name("size").value(z.getSize());
+                if (z.getMinY() != Double.NEGATIVE_INFINITY) out.name("minY").value(z.getMinY());
+                if (z.getMaxY() != Double.POSITIVE_INFINITY) out.name("maxY").value(z.getMaxY());
+                PsychikZone.EdgeTable poly = z.getPolygon();
+                if (poly != null) {
+                    double[] xs = poly.getXs();
+                    double[] zs = poly.getZs();
+                    out.name("points").beginArray();
+                    for (int i = 0; i < xs.length; i++) {
+                        out.beginArray().value(xs[i]).value(zs[i]).endArray();
+                    }
+                    out.endArray();
                 }
+                out.name("gravity").value(z.getGravityMultiplier());
+                out.name("speed").value(z.getSpeedMultiplier());
+                out.name("jump").value(z.getJumpMultiplier());
+                out.name("knockback").value(z.getKnockbackMultiplier());
+                out.name("stamina").value(z.getStaminaDrainPerSec());
+                out.endObject();
+            }
+            out.endArray();
+            out.flush();
+        }
+        
+        private static PsychikZone zone(String name, String world, double x, double y, double z, String shape, double size) {
+            if (name == null || name.isEmpty() || world == null || world.isEmpty() || shape == null) {
+                return null;
+            }
+            try {
+                return new PsychikZone(name, world, x, y, z, PsychikZone.Shape.valueOf(shape.toUpperCase()), size);
+            } catch (IllegalArgumentException e) {
+                return null;
             }
         }
+        
+        private static void effects(PsychikZone z, double gravity, double speed, double jump, double knockback, double stamina) {
+            z.setGravityMultiplier(gravity);
+            z.setSpeedMultiplier(speed);
+            z.setJumpMultiplier(jump);
+            z.setKnockbackMultiplier(knockback);
+            z.setStaminaDrainPerSec(stamina);
+        }
+        
+        private static boolean polygon(PsychikZone z, String[] points, String sep) {
+            double[] xs = new double[points.length];
+            double[] zs = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                String[] p = points[i].split(sep);
+                xs[i] = num(p[0]);
+                zs[i] = num(p[1]);
+            }
+            return z.getShape() == PsychikZone.Shape.POLYGON && z.setPolygon(xs, zs);
+        }
+        
+        private static void tick(Result r, IntConsumer progress) {
+            if (progress != null && r.zones.size() % CHUNK == 0 && !r.zones.isEmpty()) {
+                progress.accept(r.zones.size());
+            }
+        }
+        
+        private static double num(String v) {
+            return Double.parseDouble(v.trim());
+        }
+        
+        private static double bound(String v, double unbounded) {
+            return v.trim().isEmpty() ? unbounded : num(v);
+        }
+        
+        private static String str(JsonObject o, String key) {
+            return o.has(key) && !o.get(key).isJsonNull() ? o.get(key).getAsString() : null;
+        }
+        
+        private static double dbl(JsonObject o, String key, double def) {
+            return o.has(key) && !o.get(key).isJsonNull() ? o.get(key).getAsDouble() : def;
+        }
     }
 }
@@ -0,0 +1,207 @@
+package org.bloby.psychik;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import org.bloby.psychik.Psychik.BinaryZoneStore;
+import org.bloby.psychik.Psychik.JournaledZoneStore.Op;
+import org.bloby.psychik.Psychik.PsychikZone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryZoneStoreTest {
+    @TempDir
+    Path dir;
+
+    private Psychik plugin;
+    private File data;
+    private File journal;
+    private File yaml;
+
+    @BeforeEach
+    void setUp() {
+        MockBukkit.mock();
+        plugin = MockBukkit.load(Psychik.class);
+        data = dir.resolve("zones.dat").toFile();
+        journal = dir.resolve("zones.journal").toFile();
+        yaml = dir.resolve("zones.yml").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    private BinaryZoneStore store() {
+        return new BinaryZoneStore(plugin, data, journal, yaml);
+    }
+
+    private static PsychikZone circle(String name, double size) {
+        PsychikZone z = new PsychikZone(name, "world", 10.5, 64, -5, PsychikZone.Shape.CIRCLE, size);
+        z.setGravityMultiplier(0.5);
+        z.setSpeedMultiplier(1.25);
+        z.setStaminaDrainPerSec(2);
+        return z;
+    }
+
+    private static PsychikZone polygon(String name) {
+        PsychikZone z = new PsychikZone(name, "world_nether", 0, 70, 0, PsychikZone.Shape.POLYGON, 0);
+        assertTrue(z.setPolygon(new double[] { -5, 5, 5, 0, -5 }, new double[] { -5, -5, 5, 8, 5 }));
+        z.setVerticalBounds(60, 90);
+        z.setJumpMultiplier(2);
+        z.setKnockbackMultiplier(1.5);
+        return z;
+    }
+
+    private static List<PsychikZone> list(PsychikZone... zones) {
+        return new ArrayList<>(Arrays.asList(zones));
+    }
+
+    private static void assertSameZone(PsychikZone expected, PsychikZone actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getWorldName(), actual.getWorldName());
+        assertEquals(expected.getShape(), actual.getShape());
+        assertEquals(expected.getX(), actual.getX());
+        assertEquals(expected.getY(), actual.getY());
+        assertEquals(expected.getZ(), actual.getZ());
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getMinY(), actual.getMinY());
+        assertEquals(expected.getMaxY(), actual.getMaxY());
+        assertEquals(expected.getGravityMultiplier(), actual.getGravityMultiplier());
+        assertEquals(expected.getSpeedMultiplier(), actual.getSpeedMultiplier());
+        assertEquals(expected.getJumpMultiplier(), actual.getJumpMultiplier());
+        assertEquals(expected.getKnockbackMultiplier(), actual.getKnockbackMultiplier());
+        assertEquals(expected.getStaminaDrainPerSec(), actual.getStaminaDrainPerSec());
+        if (expected.getPolygon() == null) {
+            assertNull(actual.getPolygon());
+        } else {
+            assertArrayEquals(expected.getPolygon().getXs(), actual.getPolygon().getXs());
+            assertArrayEquals(expected.getPolygon().getZs(), actual.getPolygon().getZs());
+        }
+    }
+
+    @Test
+    void writeAndReload() throws IOException {
+        PsychikZone a = circle("a", 12);
+        PsychikZone p = polygon("p");
+        store().write(list(a, p));
+
+        BinaryZoneStore s = store();
+        Map<String, PsychikZone> loaded = s.load();
+        assertEquals(Arrays.asList("a", "p"), new ArrayList<>(loaded.keySet()));
+        assertSameZone(a, loaded.get("a"));
+        assertSameZone(p, loaded.get("p"));
+        assertFalse(s.needsRewrite());
+        assertEquals(0, s.getJournalOps());
+    }
+
+    @Test
+    void journalIsReplayedOverData() throws IOException {
+        BinaryZoneStore s = store();
+        s.write(list(circle("a", 12), circle("b", 5)));
+        PsychikZone resized = circle("a", 20);
+        PsychikZone c = polygon("c");
+        s.append(Arrays.asList(new Op("a", resized), new Op("b", null), new Op("c", c)));
+        assertEquals(3, s.getJournalOps());
+
+        BinaryZoneStore reloaded = store();
+        Map<String, PsychikZone> loaded = reloaded.load();
+        // Náhrada drží původní pozici, smazaná zóna zmizí, nová jde na konec
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(loaded.keySet()));
+        assertSameZone(resized, loaded.get("a"));
+        assertSameZone(c, loaded.get("c"));
+        assertEquals(3, reloaded.getJournalOps());
+        assertFalse(reloaded.needsRewrite());
+    }
+
+    @Test
+    void compactionResetsJournal() throws IOException {
+        BinaryZoneStore s = store();
+        s.write(list(circle("a", 12)));
+        s.append(Collections.singletonList(new Op("b", circle("b", 5))));
+        s.write(list(circle("a", 12), circle("b", 5)));
+        assertEquals(0, s.getJournalOps());
+
+        BinaryZoneStore reloaded = store();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(reloaded.load().keySet()));
+        assertEquals(0, reloaded.getJournalOps());
+    }
+
+    @Test
+    void staleJournalGenerationIsIgnored() throws IOException {
+        BinaryZoneStore s = store();
+        s.write(list(circle("a", 12)));
+        s.append(Collections.singletonList(new Op("a", null)));
+        byte[] stale = Files.readAllBytes(journal.toPath());
+        // Kompakce proběhla, ale žurnál zůstal z předchozí generace
+        s.write(list(circle("a", 12)));
+        Files.write(journal.toPath(), stale);
+
+        BinaryZoneStore reloaded = store();
+        Map<String, PsychikZone> loaded = reloaded.load();
+        assertEquals(Collections.singletonList("a"), new ArrayList<>(loaded.keySet()));
+        assertEquals(0, reloaded.getJournalOps());
+        assertTrue(reloaded.needsRewrite());
+    }
+
+    @Test
+    void truncatedJournalTailIsDropped() throws IOException {
+        BinaryZoneStore s = store();
+        s.write(list(circle("a", 12)));
+        s.append(Collections.singletonList(new Op("b", circle("b", 5))));
+        s.append(Collections.singletonList(new Op("c", polygon("c"))));
+        try (RandomAccessFile f = new RandomAccessFile(journal, "rw")) {
+            f.setLength(f.length() - 7);
+        }
+
+        BinaryZoneStore reloaded = store();
+        Map<String, PsychikZone> loaded = reloaded.load();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(loaded.keySet()));
+        assertEquals(1, reloaded.getJournalOps());
+        assertTrue(reloaded.needsRewrite());
+    }
+
+    @Test
+    void unknownOpCodeEndsReplay() throws IOException {
+        BinaryZoneStore s = store();
+        s.write(list(circle("a", 12)));
+        s.append(Collections.singletonList(new Op("a", null)));
+        Files.write(journal.toPath(), new byte[] { 9, 9, 9 }, StandardOpenOption.APPEND);
+
+        BinaryZoneStore reloaded = store();
+        assertTrue(reloaded.load().isEmpty());
+        assertEquals(1, reloaded.getJournalOps());
+        assertTrue(reloaded.needsRewrite());
+    }
+
+    @Test
+    void missingJournalRequestsRewrite() throws IOException {
+        store().write(list(circle("a", 12)));
+        assertTrue(journal.delete());
+
+        BinaryZoneStore reloaded = store();
+        assertEquals(Collections.singletonList("a"), new ArrayList<>(reloaded.load().keySet()));
+        assertTrue(reloaded.needsRewrite());
+    }
+
+    @Test
+    void rejectsForeignDataFile() throws IOException {
+        Files.write(data.toPath(), "zones:\n  a: {}\n".getBytes());
+        assertThrows(IOException.class, () -> store().load());
+    }
+}
@@ -0,0 +1,189 @@
+package org.bloby.psychik;
+
+import org.bloby.psychik.Psychik.PsychikZone;
+import org.bloby.psychik.Psychik.PsychikZone.EdgeTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PsychikZoneTest {
+    // L: čtverec 10x10 bez pravého horního rohu (x > 4, z > 4)
+    private static final double[] L_XS = { 0, 10, 10, 4, 4, 0 };
+    private static final double[] L_ZS = { 0, 0, 4, 4, 10, 10 };
+
+    private static EdgeTable square() {
+        return new EdgeTable(new double[] { 0, 10, 10, 0 }, new double[] { 0, 0, 10, 10 });
+    }
+
+    private static PsychikZone polygonZone(double[] xs, double[] zs) {
+        PsychikZone z = new PsychikZone("p", "world", 0, 64, 0, PsychikZone.Shape.POLYGON, 0);
+        assertTrue(z.setPolygon(xs, zs));
+        return z;
+    }
+
+    @Test
+    void squareContainsInteriorOnly() {
+        EdgeTable t = square();
+        assertTrue(t.contains(5, 5));
+        assertTrue(t.contains(0.001, 9.999));
+        assertFalse(t.contains(-0.001, 5));
+        assertFalse(t.contains(10.001, 5));
+        assertFalse(t.contains(5, -0.001));
+        assertFalse(t.contains(5, 10.001));
+    }
+
+    @Test
+    void concaveNotchIsOutside() {
+        EdgeTable t = new EdgeTable(L_XS, L_ZS);
+        assertTrue(t.contains(2, 8));
+        assertTrue(t.contains(8, 2));
+        assertFalse(t.contains(8, 8));
+        assertFalse(t.contains(4.5, 4.5));
+    }
+
+    @Test
+    void pointOnSlabBoundaryUsesUpperSlab() {
+        EdgeTable t = new EdgeTable(L_XS, L_ZS);
+        // z = 4 je hranice slabů - bod musí patřit slabu nad ní
+        assertTrue(t.contains(2, 4));
+        assertFalse(t.contains(8, 4));
+        assertTrue(t.contains(8, 3.999));
+    }
+
+    @Test
+    void horizontalEdgesDoNotFlipParity() {
+        // Trojúhelník s vodorovnou základnou
+        EdgeTable t = new EdgeTable(new double[] { 0, 10, 5 }, new double[] { 0, 0, 10 });
+        assertTrue(t.contains(5, 0));
+        assertTrue(t.contains(5, 5));
+        assertFalse(t.contains(1, 8));
+        assertFalse(t.contains(-1, 0));
+    }
+
+    @Test
+    void windingDirectionDoesNotMatter() {
+        double[] xs = L_XS.clone();
+        double[] zs = L_ZS.clone();
+        for (int i = 0, j = xs.length - 1; i < j; i++, j--) {
+            double tx = xs[i]; xs[i] = xs[j]; xs[j] = tx;
+            double tz = zs[i]; zs[i] = zs[j]; zs[j] = tz;
+        }
+        EdgeTable a = new EdgeTable(L_XS, L_ZS);
+        EdgeTable b = new EdgeTable(xs, zs);
+        for (double px = -1; px <= 11; px += 0.37) {
+            for (double pz = -1; pz <= 11; pz += 0.41) {
+                assertEquals(a.contains(px, pz), b.contains(px, pz), "at " + px + "," + pz);
+            }
+        }
+    }
+
+    @Test
+    void areaOfConcavePolygon() {
+        assertEquals(64.0, new EdgeTable(L_XS, L_ZS).area(), 1e-9);
+    }
+
+    @Test
+    void classifyRectangles() {
+        EdgeTable t = new EdgeTable(L_XS, L_ZS);
+        assertEquals(PsychikZone.INSIDE, t.classify(1, 1, 3, 3));
+        assertEquals(PsychikZone.OUTSIDE, t.classify(20, 20, 30, 30));
+        assertEquals(PsychikZone.OUTSIDE, t.classify(5, 5, 9, 9));
+        assertEquals(PsychikZone.BOUNDARY, t.classify(3, 3, 6, 6));
+        // Polygon celý uvnitř chunku - hrany leží v obdélníku
+        assertEquals(PsychikZone.BOUNDARY, t.classify(-16, -16, 16, 16));
+    }
+
+    @Test
+    void classifyTreatsTouchingEdgeAsBoundary() {
+        EdgeTable t = square();
+        assertEquals(PsychikZone.BOUNDARY, t.classify(10, 2, 16, 8));
+        assertEquals(PsychikZone.BOUNDARY, t.classify(-6, -6, 0, 0));
+        assertEquals(PsychikZone.OUTSIDE, t.classify(10.5, 2, 16, 8));
+    }
+
+    @Test
+    void classifyAgreesWithContainsOnRandomPolygons() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            // Hvězdicový polygon kolem počátku - jednoduchý, často nekonvexní
+            int n = 3 + rnd.nextInt(10);
+            double[] xs = new double[n];
+            double[] zs = new double[n];
+            for (int i = 0; i < n; i++) {
+                double a = 2 * Math.PI * (i + rnd.nextDouble() * 0.8) / n;
+                double r = 5 + rnd.nextDouble() * 40;
+                xs[i] = Math.cos(a) * r;
+                zs[i] = Math.sin(a) * r;
+            }
+            EdgeTable t = new EdgeTable(xs, zs);
+            for (int k = 0; k < 20; k++) {
+                double minX = -64 + rnd.nextInt(112);
+                double minZ = -64 + rnd.nextInt(112);
+                int c = t.classify(minX, minZ, minX + 16, minZ + 16);
+                if (c == PsychikZone.BOUNDARY) continue;
+                for (double px = minX + 0.25; px < minX + 16; px += 1.5) {
+                    for (double pz = minZ + 0.25; pz < minZ + 16; pz += 1.5) {
+                        assertEquals(c == PsychikZone.INSIDE, t.contains(px, pz),
+                            "round " + round + " rect " + minX + "," + minZ + " point " + px + "," + pz);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void polygonZoneBoxFollowsVertices() {
+        PsychikZone z = polygonZone(L_XS, L_ZS);
+        assertEquals(0, z.getBoxMinX());
+        assertEquals(10, z.getBoxMaxX());
+        assertEquals(0, z.getBoxMinZ());
+        assertEquals(10, z.getBoxMaxZ());
+        assertTrue(z.contains(2, 64, 8));
+        assertFalse(z.contains(8, 64, 8));
+    }
+
+    @Test
+    void rejectsDegeneratePolygons() {
+        PsychikZone z = new PsychikZone("p", "world", 0, 64, 0, PsychikZone.Shape.POLYGON, 0);
+        assertFalse(z.setPolygon(new double[] { 0, 1 }, new double[] { 0, 1 }));
+        assertFalse(z.setPolygon(new double[] { 0, 1, 2 }, new double[] { 0, 1 }));
+    }
+
+    @Test
+    void circleChunkClassification() {
+        PsychikZone z = new PsychikZone("c", "world", 0, 64, 0, PsychikZone.Shape.CIRCLE, 40);
+        assertEquals(PsychikZone.INSIDE, z.classify(0, 0, 16, 16));
+        assertEquals(PsychikZone.BOUNDARY, z.classify(16, 16, 32, 32));
+        // Roh chunku v obalovém kvádru, ale mimo kruh
+        assertEquals(PsychikZone.OUTSIDE, z.classify(32, 32, 48, 48));
+        assertEquals(PsychikZone.OUTSIDE, z.classify(64, 0, 80, 16));
+    }
+
+    @Test
+    void verticalBoundsNeverClassifyInside() {
+        PsychikZone z = new PsychikZone("c", "world", 0, 64, 0, PsychikZone.Shape.CYLINDER, 40);
+        z.setVerticalBounds(60, 80);
+        assertEquals(PsychikZone.BOUNDARY, z.classify(0, 0, 16, 16));
+        assertTrue(z.contains(1, 70, 1));
+        assertFalse(z.contains(1, 90, 1));
+    }
+
+    @Test
+    void sphereBoxSpansRadiusVertically() {
+        PsychikZone z = new PsychikZone("s", "world", 0, 64, 0, PsychikZone.Shape.SPHERE, 10);
+        assertEquals(54, z.getBoxMinY());
+        assertEquals(74, z.getBoxMaxY());
+        assertTrue(z.contains(0, 73, 0));
+        assertFalse(z.contains(8, 71, 0));
+    }
+
+    @Test
+    void distanceCutoffKeepsFarCornersOfLargeZones() {
+        PsychikZone z = new PsychikZone("q", "world", 0, 64, 0, PsychikZone.Shape.SQUARE, 300);
+        // Roh čtverce je přes 400 bloků od středu - s max-check-distance 100 musí zůstat
+        assertTrue(z.isNearChunk(280 >> 4, 280 >> 4, 100));
+        assertFalse(z.isNearChunk(600 >> 4, 0, 100));
+    }
+}